@@ -0,0 +1,119 @@
+package be.heydari.adjenc.jmh;
+
+import be.heydari.adjenc.buildingblocks.HMAC;
+import be.heydari.adjenc.buildingblocks.Hash;
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
+import be.heydari.adjenc.buildingblocks.MapToCurveSecP256k1;
+import org.bouncycastle.math.ec.ECPoint;
+import org.miracl.core.SECP256K1.ECP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HMAC, map-to-curve and the MIRACL/BouncyCastle point conversions.
+ *
+ * @author Emad Heydari Beni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuildingBlocksBenchmark {
+
+    private static final int MAP_BATCH = 256;
+
+    @Param({"16", "256", "4096"})
+    public int messageSize;
+
+    HMAC hmac;
+    MapToCurveSecP256k1 mapToCurve;
+    byte[] prfKey;
+    KeyedHMAC keyedHmac;
+    byte[] message;
+    byte[] digest;
+    byte[][] digests;
+    ECP ecp;
+    ECPoint ecPoint;
+
+    @Setup
+    public void setup() {
+        hmac = new HMAC("NativePRNG", 256, 256);
+        mapToCurve = new MapToCurveSecP256k1(hmac, new Hash());
+        prfKey = hmac.generateKey();
+        keyedHmac = hmac.keyed(prfKey);
+        message = new byte[messageSize];
+        ThreadLocalRandom.current().nextBytes(message);
+        digest = hmac.hash(message, prfKey);
+        digests = new byte[MAP_BATCH][];
+        for (int i = 0; i < MAP_BATCH; i++) {
+            digests[i] = keyedHmac.hash(Integer.toString(i).getBytes());
+        }
+        ecp = mapToCurve.mapToPoint(digest);
+        ecPoint = mapToCurve.convertToECPoint(ecp);
+    }
+
+    @Benchmark
+    public byte[] hmacHash() {
+        return hmac.hash(message, prfKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] hmacHashMultiThread() {
+        return hmac.hash(message, prfKey);
+    }
+
+    @Benchmark
+    public byte[] keyedHmacHash() {
+        return keyedHmac.hash(message);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] keyedHmacHashMultiThread() {
+        return keyedHmac.hash(message);
+    }
+
+    @Benchmark
+    public ECP mapToPoint() {
+        return mapToCurve.mapToPoint(digest);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECP mapToPointMultiThread() {
+        return mapToCurve.mapToPoint(digest);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MAP_BATCH)
+    public ECP[] mapToPoints() {
+        return mapToCurve.mapToPoints(digests);
+    }
+
+    @Benchmark
+    public ECPoint convertToECPoint() {
+        return mapToCurve.convertToECPoint(ecp);
+    }
+
+    @Benchmark
+    public ECP convertToECP() {
+        return mapToCurve.convertToECP(ecPoint);
+    }
+}
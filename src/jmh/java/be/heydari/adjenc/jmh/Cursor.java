@@ -0,0 +1,22 @@
+package be.heydari.adjenc.jmh;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-thread position in a batch of inputs, for benchmarks that cycle
+ * through distinct points instead of reusing one.
+ *
+ * @author Emad Heydari Beni
+ */
+@State(Scope.Thread)
+public class Cursor {
+
+    private int index;
+
+    int next(int size) {
+        int i = index;
+        index = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+}
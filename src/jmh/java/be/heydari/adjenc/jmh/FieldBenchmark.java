@@ -0,0 +1,69 @@
+package be.heydari.adjenc.jmh;
+
+import org.miracl.core.RAND;
+import org.miracl.core.SECP256K1.BIG;
+import org.miracl.core.SECP256K1.ECP;
+import org.miracl.core.SECP256K1.FP;
+import org.miracl.core.SECP256K1.ROM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MIRACL secp256k1 field arithmetic, to compare the reductions that can be
+ * selected with CONFIG_FIELD.MODTYPE.
+ *
+ * @author Emad Heydari Beni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldBenchmark {
+
+    FP a;
+    FP b;
+    ECP generator;
+    BIG scalar;
+
+    @Setup
+    public void setup() {
+        RAND rng = new RAND();
+        rng.seed(32, new SecureRandom().generateSeed(32));
+        a = new FP(rng);
+        b = new FP(rng);
+        generator = ECP.generator();
+        scalar = BIG.randomnum(new BIG(ROM.CURVE_Order), rng);
+    }
+
+    @Benchmark
+    public FP fpMul() {
+        FP r = new FP(a);
+        r.mul(b);
+        return r;
+    }
+
+    @Benchmark
+    public FP fpSqr() {
+        FP r = new FP(a);
+        r.sqr();
+        return r;
+    }
+
+    @Benchmark
+    public ECP ecpMul() {
+        return generator.mul(scalar);
+    }
+}
@@ -0,0 +1,96 @@
+package be.heydari.adjenc.jmh;
+
+import be.heydari.adjenc.buildingblocks.HMAC;
+import be.heydari.adjenc.buildingblocks.Hash;
+import be.heydari.adjenc.buildingblocks.MapToCurveSecP256k1;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+import org.miracl.core.SECP256K1.BIG;
+import org.miracl.core.SECP256K1.ECP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw MIRACL ECP.mul against BouncyCastle ECPoint.multiply on the same
+ * points and scalar.
+ *
+ * Every call takes the next of batchSize distinct points. BouncyCastle
+ * keeps the window table of a point after its first multiplication, so it
+ * multiplies a fresh copy of that point; otherwise every call but the first
+ * would run with a warm table, and the multi-threaded variant would
+ * contend on the lock that guards it.
+ *
+ * @author Emad Heydari Beni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScalarMultiplicationBenchmark {
+
+    @Param({"1024"})
+    public int batchSize;
+
+    ECP[] ecps;
+    ECPoint[] ecPoints;
+    BIG big;
+    BigInteger scalar;
+
+    @Setup
+    public void setup() {
+        HMAC hmac = new HMAC("NativePRNG", 256, 256);
+        MapToCurveSecP256k1 mapToCurve = new MapToCurveSecP256k1(hmac, new Hash());
+        byte[] key = hmac.generateKey();
+        ecps = new ECP[batchSize];
+        ecPoints = new ECPoint[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            ecps[i] = mapToCurve.hmacToCurve(("benchmark-" + i).getBytes(), key);
+            ecPoints[i] = mapToCurve.convertToECPoint(ecps[i]);
+        }
+        scalar = new BigInteger(255, new SecureRandom());
+        big = BIG.fromBytes(BigIntegers.asUnsignedByteArray(32, scalar));
+    }
+
+    private ECPoint freshECPoint(Cursor cursor) {
+        ECPoint p = ecPoints[cursor.next(batchSize)];
+        return p.getCurve().createPoint(p.getAffineXCoord().toBigInteger(), p.getAffineYCoord().toBigInteger());
+    }
+
+    @Benchmark
+    public ECP miraclMul(Cursor cursor) {
+        return ecps[cursor.next(batchSize)].mul(big);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECP miraclMulMultiThread(Cursor cursor) {
+        return ecps[cursor.next(batchSize)].mul(big);
+    }
+
+    @Benchmark
+    public ECPoint bouncyCastleMultiply(Cursor cursor) {
+        return freshECPoint(cursor).multiply(scalar);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECPoint bouncyCastleMultiplyMultiThread(Cursor cursor) {
+        return freshECPoint(cursor).multiply(scalar);
+    }
+}
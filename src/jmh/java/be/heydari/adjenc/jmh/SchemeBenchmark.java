@@ -0,0 +1,229 @@
+package be.heydari.adjenc.jmh;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.Ciphertext;
+import be.heydari.adjenc.PointFormat;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import org.bouncycastle.math.ec.ECPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row and batch operations of AdjustableScheme. Batch benchmarks
+ * report batches per second; multiply by batchSize to compare with rows.
+ * The per-row adjust benchmarks cycle through the rows of the column and
+ * adjust a fresh copy of each, and adjustAll gets a fresh copy of the whole
+ * column per invocation, so that BouncyCastle cannot reuse a window table
+ * it cached on a point in an earlier call.
+ *
+ * @author Emad Heydari Beni
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchemeBenchmark {
+
+    @Param({"16", "256"})
+    public int messageSize;
+
+    @Param({"64", "1024"})
+    public int batchSize;
+
+    AdjustableScheme scheme;
+    byte[] prfKey;
+    BigInteger secretKey;
+    BigInteger deltaToken;
+    PreparedScalar preparedSecretKey;
+    PreparedScalar preparedDeltaToken;
+    byte[] message;
+    ECPoint ciphertext;
+    byte[] encoded;
+    byte[][] messages;
+    ECPoint[] column;
+    Ciphertext[] lazyColumn;
+    ByteBuffer compressedColumn;
+    ByteBuffer rawColumn;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        scheme = new AdjustableScheme();
+        prfKey = scheme.genMessagePrfKey();
+        secretKey = scheme.genSecretKey();
+        deltaToken = scheme.genDeltaToken(secretKey, scheme.genSecretKey());
+        preparedSecretKey = scheme.prepare(secretKey);
+        preparedDeltaToken = scheme.prepare(deltaToken);
+        message = randomMessage();
+        ciphertext = scheme.encrypt(message, prfKey, secretKey);
+        encoded = scheme.encodeEcPoint(ciphertext);
+        messages = new byte[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            messages[i] = randomMessage();
+        }
+        column = scheme.encryptAll(messages, prfKey, secretKey);
+        lazyColumn = new Ciphertext[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            lazyColumn[i] = scheme.encryptLazy(messages[i], prfKey, preparedSecretKey);
+        }
+        compressedColumn = ByteBuffer.allocate(batchSize * PointFormat.COMPRESSED.size());
+        rawColumn = ByteBuffer.allocate(batchSize * PointFormat.RAW.size());
+        for (ECPoint c : column) {
+            compressedColumn.put(scheme.encodeEcPoint(c, PointFormat.COMPRESSED));
+            rawColumn.put(scheme.encodeEcPoint(c, PointFormat.RAW));
+        }
+        compressedColumn.flip();
+        rawColumn.flip();
+    }
+
+    private ECPoint nextCiphertext(Cursor cursor) {
+        return copyOf(column[cursor.next(batchSize)]);
+    }
+
+    private static ECPoint copyOf(ECPoint c) {
+        return c.getCurve().createPoint(c.getAffineXCoord().toBigInteger(), c.getAffineYCoord().toBigInteger());
+    }
+
+    private byte[] randomMessage() {
+        byte[] m = new byte[messageSize];
+        ThreadLocalRandom.current().nextBytes(m);
+        return m;
+    }
+
+    @Benchmark
+    public ECPoint encrypt() throws NoSuchAlgorithmException {
+        return scheme.encrypt(message, prfKey, secretKey);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECPoint encryptMultiThread() throws NoSuchAlgorithmException {
+        return scheme.encrypt(message, prfKey, secretKey);
+    }
+
+    @Benchmark
+    public ECPoint[] encryptAll() throws NoSuchAlgorithmException {
+        return scheme.encryptAll(messages, prfKey, secretKey);
+    }
+
+    @Benchmark
+    public byte[] encryptToBytes() {
+        return scheme.encryptToBytes(message, prfKey, secretKey);
+    }
+
+    @Benchmark
+    public byte[] encryptToBytesPrepared() {
+        return scheme.encryptToBytes(message, prfKey, preparedSecretKey);
+    }
+
+    @Benchmark
+    public ECPoint adjust(Cursor cursor) {
+        return scheme.adjust(deltaToken, nextCiphertext(cursor));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECPoint adjustMultiThread(Cursor cursor) {
+        return scheme.adjust(deltaToken, nextCiphertext(cursor));
+    }
+
+    @Benchmark
+    public ECPoint[] adjustAll(FreshColumn fresh) {
+        return scheme.adjustAll(deltaToken, fresh.column);
+    }
+
+    @Benchmark
+    public byte[] adjustBytes() {
+        return scheme.adjustBytes(deltaToken, encoded);
+    }
+
+    @Benchmark
+    public ECPoint adjustPrepared(Cursor cursor) {
+        return scheme.adjust(preparedDeltaToken, nextCiphertext(cursor));
+    }
+
+    @Benchmark
+    public byte[] adjustBytesPrepared() {
+        return scheme.adjustBytes(preparedDeltaToken, encoded);
+    }
+
+    @Benchmark
+    public byte[][] adjustAllBytes() {
+        byte[][] adjusted = new byte[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            adjusted[i] = scheme.adjustBytes(preparedDeltaToken, lazyColumn[i].getEncoded());
+        }
+        return adjusted;
+    }
+
+    @Benchmark
+    public byte[][] adjustAllLazy() {
+        return Ciphertext.encodeAll(scheme.adjustAll(preparedDeltaToken, lazyColumn));
+    }
+
+    @Benchmark
+    public byte[] encodeEcPoint() {
+        return scheme.encodeEcPoint(ciphertext);
+    }
+
+    @Benchmark
+    public ECPoint decodeEcPoint() {
+        return scheme.decodeEcPoint(encoded);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ECPoint decodeEcPointMultiThread() {
+        return scheme.decodeEcPoint(encoded);
+    }
+
+    @Benchmark
+    public ECPoint[] decodeAllCompressed() {
+        return scheme.decodeAll(compressedColumn, PointFormat.COMPRESSED, false);
+    }
+
+    @Benchmark
+    public ECPoint[] decodeAllRaw() {
+        return scheme.decodeAll(rawColumn, PointFormat.RAW, false);
+    }
+
+    @Benchmark
+    public ECPoint[] decodeAllRawTrusted() {
+        return scheme.decodeAll(rawColumn, PointFormat.RAW, true);
+    }
+
+    /**
+     * Copies of the column without cached multiplication tables, made
+     * before every invocation and outside the measurement.
+     */
+    @State(Scope.Thread)
+    public static class FreshColumn {
+        ECPoint[] column;
+
+        @Setup(Level.Invocation)
+        public void copy(SchemeBenchmark benchmark) {
+            column = new ECPoint[benchmark.column.length];
+            for (int i = 0; i < column.length; i++) {
+                column[i] = copyOf(benchmark.column[i]);
+            }
+        }
+    }
+}
@@ -2,25 +2,43 @@ package be.heydari.adjenc;
 
 import be.heydari.adjenc.buildingblocks.HMAC;
 import be.heydari.adjenc.buildingblocks.Hash;
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
 import be.heydari.adjenc.buildingblocks.MapToCurveSecP256k1;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import be.heydari.adjenc.buildingblocks.RandomnessProvider;
+import be.heydari.adjenc.buildingblocks.RecodedScalar;
+import be.heydari.adjenc.cache.HashedPointCache;
 import org.bouncycastle.asn1.sec.SECNamedCurves;
 import org.bouncycastle.asn1.x9.X9ECParameters;
-import org.bouncycastle.crypto.CryptoServicesRegistrar;
 import org.bouncycastle.crypto.params.ECDomainParameters;
 import org.bouncycastle.crypto.params.ECKeyParameters;
 import org.bouncycastle.math.ec.ECConstants;
+import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECPoint;
 import org.bouncycastle.util.BigIntegers;
+import org.miracl.core.SECP256K1.BIG;
+import org.miracl.core.SECP256K1.CONFIG_BIG;
+import org.miracl.core.SECP256K1.ECP;
+import org.miracl.core.SECP256K1.ROM;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @Author Emad Heydari Beni
  */
 public class AdjustableScheme implements AdjustableSchemeInterface {
 
+    /** Size of a compressed secp256k1 point as produced by encodeEcPoint */
+    public static final int ENCODED_POINT_SIZE = 33;
+
+    /** Size of an x-only ciphertext as produced by encryptX */
+    public static final int X_ONLY_SIZE = 32;
+
     private static final String DEFAULT_CURVE = "secp256k1";
     private static final int HMAC_KEY_SIZE = 256;
     private static final int HMAC_DIGEST_SIZE = 256;
@@ -30,14 +48,26 @@ public class AdjustableScheme implements AdjustableSchemeInterface {
     private ECDomainParameters domainParams;
     MapToCurveSecP256k1 mapToCurveSecP256k1;
     HMAC hmac;
+    RandomnessProvider random;
+    private HashedPointCache hashedPoints;
 
     public AdjustableScheme() {
         init(DEFAULT_CURVE);
     }
 
+    /**
+     * Looks hashed points up in the given cache before running HMAC and
+     * map2point. The cache may be shared by schemes on several threads.
+     */
+    public AdjustableScheme(HashedPointCache hashedPoints) {
+        init(DEFAULT_CURVE);
+        this.hashedPoints = hashedPoints;
+    }
+
 
     private void init(String curve) {
         // preparing the curve
+        random = RandomnessProvider.getInstance(SECURE_RANDOM_ALG);
         hmac = new HMAC(SECURE_RANDOM_ALG, HMAC_KEY_SIZE, HMAC_DIGEST_SIZE);
         X9ECParameters ecp = SECNamedCurves.getByName(curve);
         domainParams = new ECDomainParameters(
@@ -54,7 +84,7 @@ public class AdjustableScheme implements AdjustableSchemeInterface {
     }
 
     public BigInteger genSecretKey() {
-        return generateR(domainParams.getN(), CryptoServicesRegistrar.getSecureRandom());
+        return generateR(domainParams.getN(), random.current());
     }
 
     /**
@@ -62,15 +92,158 @@ public class AdjustableScheme implements AdjustableSchemeInterface {
      * Compute (sk)P
      */
     public ECPoint encrypt(byte[] message, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException {
-        ECPoint P = mapToCurveSecP256k1.hmacToCurveECPoint(message, messagePrfKey);
+        ECPoint P = hashedPoint(message, hmac.keyed(messagePrfKey));
+        return P.multiply(secretKey).normalize();
+    }
+
+    /**
+     * Same as encrypt, with the PRF key already bound to a reusable HMAC context
+     */
+    public ECPoint encrypt(byte[] message, KeyedHMAC messagePrf, BigInteger secretKey) {
+        ECPoint P = hashedPoint(message, messagePrf);
         return P.multiply(secretKey).normalize();
     }
 
+    /**
+     * Encrypts without leaving MIRACL: the hashed point is multiplied with
+     * ECP.mul and written with ECP.toBytes. The output is byte-compatible
+     * with encodeEcPoint(encrypt(...)).
+     */
+    public byte[] encryptToBytes(byte[] message, byte[] messagePrfKey, BigInteger secretKey) {
+        return encryptToBytes(message, hmac.keyed(messagePrfKey), secretKey);
+    }
+
+    public byte[] encryptToBytes(byte[] message, KeyedHMAC messagePrf, BigInteger secretKey) {
+        ECP P = hashedEcp(message, messagePrf);
+        return toBytes(P.mul(toBIG(secretKey)));
+    }
+
+    /**
+     * Recodes a secret key or delta token once, for the PreparedScalar
+     * overloads of encrypt and adjust.
+     */
+    public PreparedScalar prepare(BigInteger scalar) {
+        return new PreparedScalar(domainParams.getCurve(), scalar);
+    }
+
+    public ECPoint encrypt(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey) {
+        return encrypt(message, hmac.keyed(messagePrfKey), secretKey);
+    }
+
+    public ECPoint encrypt(byte[] message, KeyedHMAC messagePrf, PreparedScalar secretKey) {
+        return toECPoint(secretKey.mul(hashedEcp(message, messagePrf)));
+    }
+
+    public byte[] encryptToBytes(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey) {
+        return encryptToBytes(message, hmac.keyed(messagePrfKey), secretKey);
+    }
+
+    public byte[] encryptToBytes(byte[] message, KeyedHMAC messagePrf, PreparedScalar secretKey) {
+        ECP P = hashedEcp(message, messagePrf);
+        return toBytes(secretKey.mul(P));
+    }
+
+    /**
+     * Like encryptToBytes, but the ciphertext stays projective until it is
+     * encoded, so no inversion is spent on results that are adjusted again
+     * or only compared.
+     */
+    public Ciphertext encryptLazy(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey) {
+        return encryptLazy(message, hmac.keyed(messagePrfKey), secretKey);
+    }
+
+    public Ciphertext encryptLazy(byte[] message, KeyedHMAC messagePrf, PreparedScalar secretKey) {
+        ECP P = hashedEcp(message, messagePrf);
+        return new Ciphertext(secretKey.mul(P));
+    }
+
+    /**
+     * x-only ciphertexts: the 32-byte x-coordinate of (sk)P, which is all an
+     * equality join needs. x(kP) only depends on x(P), because x(-P) = x(P),
+     * so adjustX lifts x to either of its points and multiplies that.
+     */
+    public byte[] encryptX(byte[] message, byte[] messagePrfKey, BigInteger secretKey) {
+        ECP P = hashedEcp(message, hmac.keyed(messagePrfKey));
+        return toXBytes(P.mul(toBIG(secretKey)));
+    }
+
+    public byte[] encryptX(byte[] message, KeyedHMAC messagePrf, PreparedScalar secretKey) {
+        return toXBytes(secretKey.mul(hashedEcp(message, messagePrf)));
+    }
+
+    public KeyedHMAC genMessagePrf(byte[] messagePrfKey) {
+        return hmac.keyed(messagePrfKey);
+    }
+
+    /**
+     * Batch variant of encrypt: the messages are mapped to the curve together,
+     * and the ciphertexts are kept in projective form and normalized together,
+     * sharing one field inversion (Montgomery's trick).
+     */
+    public ECPoint[] encryptAll(byte[][] messages, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException {
+        KeyedHMAC messagePrf = hmac.keyed(messagePrfKey);
+        ECP[] hashed = hashedPoints == null
+                ? mapToCurveSecP256k1.hmacToCurve(messages, messagePrf)
+                : hashedPoints.getAll(messages, messagePrf, mapToCurveSecP256k1);
+        ECPoint[] ciphertexts = new ECPoint[hashed.length];
+        for (int i = 0; i < ciphertexts.length; i++) {
+            ciphertexts[i] = mapToCurveSecP256k1.convertToECPoint(hashed[i]).multiply(secretKey);
+        }
+        domainParams.getCurve().normalizeAll(ciphertexts);
+        return ciphertexts;
+    }
+
+    /**
+     * Encrypts one message under several secret keys. The message is hashed
+     * and mapped to the curve once; BouncyCastle keeps the window table of P
+     * on the point after the first multiplication, so the other keys reuse it.
+     * The ciphertexts are normalized together.
+     */
+    public ECPoint[] encryptUnderKeys(byte[] message, byte[] messagePrfKey, BigInteger[] secretKeys) {
+        return encryptUnderKeys(message, hmac.keyed(messagePrfKey), secretKeys);
+    }
+
+    public ECPoint[] encryptUnderKeys(byte[] message, KeyedHMAC messagePrf, BigInteger[] secretKeys) {
+        ECPoint P = hashedPoint(message, messagePrf);
+        ECPoint[] ciphertexts = new ECPoint[secretKeys.length];
+        for (int i = 0; i < secretKeys.length; i++) {
+            ciphertexts[i] = P.multiply(secretKeys[i]);
+        }
+        domainParams.getCurve().normalizeAll(ciphertexts);
+        return ciphertexts;
+    }
+
+    private ECPoint hashedPoint(byte[] message, KeyedHMAC messagePrf) {
+        return mapToCurveSecP256k1.convertToECPoint(hashedEcp(message, messagePrf));
+    }
+
+    private ECP hashedEcp(byte[] message, KeyedHMAC messagePrf) {
+        return hashedPoints == null
+                ? mapToCurveSecP256k1.hmacToCurve(message, messagePrf)
+                : hashedPoints.get(message, messagePrf, mapToCurveSecP256k1);
+    }
+
+    public List<ECPoint> encryptAll(List<byte[]> messages, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException {
+        return Arrays.asList(encryptAll(messages.toArray(new byte[0][]), messagePrfKey, secretKey));
+    }
+
     public BigInteger genDeltaToken(BigInteger oldSecretKey, BigInteger newSecretKey) {
         BigInteger inverseOldSecretKey = oldSecretKey.modInverse(domainParams.getN());
         return inverseOldSecretKey.multiply(newSecretKey).mod(domainParams.getN());
     }
 
+    /**
+     * Composes a chain of delta tokens (sk0 to sk1, sk1 to sk2, ...) into the
+     * single token that relates the first key to the last one.
+     */
+    public BigInteger composeDeltaTokens(BigInteger... deltaTokens) {
+        BigInteger composed = BigInteger.ONE;
+        for (BigInteger deltaToken : deltaTokens) {
+            composed = composed.multiply(deltaToken).mod(domainParams.getN());
+        }
+        return composed;
+    }
+
     /**
      * We know: deltaToken = newSk/oldSK; ciphertext = (oldSk)P
      * Computes (oldSk)(newSk/oldSk)P
@@ -79,6 +252,188 @@ public class AdjustableScheme implements AdjustableSchemeInterface {
         return ciphertext.multiply(deltaToken).normalize();
     }
 
+    /**
+     * Runs the constant-time MIRACL multiplication of the prepared token and
+     * converts the result back.
+     */
+    public ECPoint adjust(PreparedScalar deltaToken, ECPoint ciphertext) {
+        if (ciphertext.isInfinity()) {
+            return ciphertext;
+        }
+        return toECPoint(deltaToken.mul(mapToCurveSecP256k1.convertToECP(ciphertext.normalize())));
+    }
+
+    public Ciphertext adjust(PreparedScalar deltaToken, Ciphertext ciphertext) {
+        return new Ciphertext(deltaToken.mul(ciphertext.getPoint()));
+    }
+
+    /**
+     * The adjusted ciphertexts are left projective; use Ciphertext.encodeAll
+     * to normalize and encode them with one inversion.
+     */
+    public Ciphertext[] adjustAll(PreparedScalar deltaToken, Ciphertext[] ciphertexts) {
+        Ciphertext[] adjusted = new Ciphertext[ciphertexts.length];
+        for (int i = 0; i < ciphertexts.length; i++) {
+            adjusted[i] = adjust(deltaToken, ciphertexts[i]);
+        }
+        return adjusted;
+    }
+
+    /**
+     * Adjusts one ciphertext to several target keys. The precomputation of
+     * the point is done once and shared by all delta tokens.
+     */
+    public Ciphertext[] adjust(PreparedScalar[] deltaTokens, Ciphertext ciphertext) {
+        ECP[] table = PreparedScalar.precompute(ciphertext.getPoint());
+        Ciphertext[] adjusted = new Ciphertext[deltaTokens.length];
+        for (int i = 0; i < deltaTokens.length; i++) {
+            adjusted[i] = new Ciphertext(deltaTokens[i].mul(table));
+        }
+        return adjusted;
+    }
+
+    /**
+     * Column variant of adjust(PreparedScalar[], Ciphertext): result[t][row]
+     * is the row adjusted with deltaTokens[t].
+     */
+    public Ciphertext[][] adjustAll(PreparedScalar[] deltaTokens, Ciphertext[] ciphertexts) {
+        Ciphertext[][] adjusted = new Ciphertext[deltaTokens.length][ciphertexts.length];
+        for (int row = 0; row < ciphertexts.length; row++) {
+            ECP[] table = PreparedScalar.precompute(ciphertexts[row].getPoint());
+            for (int t = 0; t < deltaTokens.length; t++) {
+                adjusted[t][row] = new Ciphertext(deltaTokens[t].mul(table));
+            }
+        }
+        return adjusted;
+    }
+
+    /**
+     * Adjusts a whole column under one delta token: the token is recoded once,
+     * every point is multiplied and the results are normalized together.
+     */
+    public ECPoint[] adjustAll(BigInteger deltaToken, ECPoint[] ciphertexts) {
+        return adjustAll(recodeDeltaToken(deltaToken), ciphertexts);
+    }
+
+    public RecodedScalar recodeDeltaToken(BigInteger deltaToken) {
+        return new RecodedScalar(domainParams.getCurve(), deltaToken);
+    }
+
+    public ECPoint[] adjustAll(RecodedScalar delta, ECPoint[] ciphertexts) {
+        ECPoint[] adjusted = new ECPoint[ciphertexts.length];
+        for (int i = 0; i < ciphertexts.length; i++) {
+            adjusted[i] = delta.multiply(ciphertexts[i]);
+        }
+        domainParams.getCurve().normalizeAll(adjusted);
+        return adjusted;
+    }
+
+    public byte[][] adjustAll(BigInteger deltaToken, byte[][] encodedCiphertexts) {
+        ECPoint[] ciphertexts = new ECPoint[encodedCiphertexts.length];
+        for (int i = 0; i < encodedCiphertexts.length; i++) {
+            ciphertexts[i] = decodeEcPoint(encodedCiphertexts[i]);
+        }
+        ECPoint[] adjusted = adjustAll(deltaToken, ciphertexts);
+        byte[][] encoded = new byte[adjusted.length][];
+        for (int i = 0; i < adjusted.length; i++) {
+            encoded[i] = encodeEcPoint(adjusted[i]);
+        }
+        return encoded;
+    }
+
+    /**
+     * MIRACL counterpart of adjust on encoded ciphertexts; it accepts and
+     * produces the encoding of encodeEcPoint.
+     */
+    public byte[] adjustBytes(BigInteger deltaToken, byte[] encodedCiphertext) {
+        return toBytes(decodeEcp(encodedCiphertext).mul(toBIG(deltaToken)));
+    }
+
+    public byte[] adjustBytes(PreparedScalar deltaToken, byte[] encodedCiphertext) {
+        return toBytes(deltaToken.mul(decodeEcp(encodedCiphertext)));
+    }
+
+    public byte[][] adjustBytes(PreparedScalar[] deltaTokens, byte[] encodedCiphertext) {
+        return Ciphertext.encodeAll(adjust(deltaTokens, new Ciphertext(decodeEcp(encodedCiphertext))));
+    }
+
+    /**
+     * Adjusts an encoded column to several target keys; result[t][row] is
+     * the row adjusted with deltaTokens[t]. Each target column is normalized
+     * with one inversion.
+     */
+    public byte[][][] adjustAllBytes(PreparedScalar[] deltaTokens, byte[][] encodedCiphertexts) {
+        Ciphertext[] ciphertexts = new Ciphertext[encodedCiphertexts.length];
+        for (int i = 0; i < encodedCiphertexts.length; i++) {
+            ciphertexts[i] = new Ciphertext(decodeEcp(encodedCiphertexts[i]));
+        }
+        Ciphertext[][] adjusted = adjustAll(deltaTokens, ciphertexts);
+        byte[][][] encoded = new byte[deltaTokens.length][][];
+        for (int t = 0; t < deltaTokens.length; t++) {
+            encoded[t] = Ciphertext.encodeAll(adjusted[t]);
+        }
+        return encoded;
+    }
+
+    public byte[] adjustX(BigInteger deltaToken, byte[] xCiphertext) {
+        return toXBytes(decodeX(xCiphertext).mul(toBIG(deltaToken)));
+    }
+
+    public byte[] adjustX(PreparedScalar deltaToken, byte[] xCiphertext) {
+        return toXBytes(deltaToken.mul(decodeX(xCiphertext)));
+    }
+
+    private static ECP decodeX(byte[] xCiphertext) {
+        if (xCiphertext.length != X_ONLY_SIZE) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        BIG x = BIG.fromBytes(xCiphertext);
+        if (BIG.comp(x, new BIG(ROM.Modulus)) >= 0) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        ECP ciphertext = new ECP(x);
+        if (ciphertext.is_infinity()) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        return ciphertext;
+    }
+
+    private static byte[] toXBytes(ECP point) {
+        if (point.is_infinity()) {
+            throw new IllegalArgumentException("the point at infinity has no x-only encoding");
+        }
+        byte[] x = new byte[X_ONLY_SIZE];
+        point.getX().toBytes(x);
+        return x;
+    }
+
+    private static ECP decodeEcp(byte[] encodedCiphertext) {
+        if (encodedCiphertext.length != ENCODED_POINT_SIZE) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        ECP ciphertext = ECP.fromBytes(encodedCiphertext);
+        if (ciphertext.is_infinity()) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        return ciphertext;
+    }
+
+    private BIG toBIG(BigInteger scalar) {
+        return BIG.fromBytes(BigIntegers.asUnsignedByteArray(CONFIG_BIG.MODBYTES, scalar.mod(domainParams.getN())));
+    }
+
+    private ECPoint toECPoint(ECP point) {
+        return point.is_infinity()
+                ? domainParams.getCurve().getInfinity()
+                : mapToCurveSecP256k1.convertToECPoint(point);
+    }
+
+    private static byte[] toBytes(ECP point) {
+        byte[] encoded = new byte[ENCODED_POINT_SIZE];
+        point.toBytes(encoded, true);
+        return encoded;
+    }
+
     private static BigInteger generateR(BigInteger n, SecureRandom random) {
         int nBitLength = n.bitLength();
         BigInteger r;
@@ -97,4 +452,75 @@ public class AdjustableScheme implements AdjustableSchemeInterface {
         return p.getEncoded(true);
     }
 
+    public byte[] encodeEcPoint(ECPoint p, PointFormat format) {
+        switch (format) {
+            case COMPRESSED:
+                return p.getEncoded(true);
+            case UNCOMPRESSED:
+                if (p.isInfinity()) {
+                    throw new IllegalArgumentException("the point at infinity has no fixed-width uncompressed encoding");
+                }
+                return p.getEncoded(false);
+            default:
+                if (p.isInfinity()) {
+                    throw new IllegalArgumentException("the point at infinity has no raw encoding");
+                }
+                return Arrays.copyOfRange(p.getEncoded(false), 1, PointFormat.UNCOMPRESSED.size());
+        }
+    }
+
+    /**
+     * Decodes and validates a point in the given format.
+     */
+    public ECPoint decodeEcPoint(byte[] encodedPoint, PointFormat format) {
+        if (encodedPoint.length != format.size()) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        if (format == PointFormat.RAW) {
+            byte[] uncompressed = new byte[PointFormat.UNCOMPRESSED.size()];
+            uncompressed[0] = 0x04;
+            System.arraycopy(encodedPoint, 0, uncompressed, 1, encodedPoint.length);
+            encodedPoint = uncompressed;
+        }
+        return domainParams.getCurve().decodePoint(encodedPoint);
+    }
+
+    /**
+     * Decodes the fixed-width points between position and limit of the
+     * column without modifying its position. A trusted column, e.g. one this
+     * node wrote itself, is read without validation; for the UNCOMPRESSED
+     * and RAW formats this also skips the on-curve check, so the points are
+     * only loaded (the 0x04 prefix of UNCOMPRESSED points is still checked).
+     * COMPRESSED points are always decompressed and validated.
+     */
+    public ECPoint[] decodeAll(ByteBuffer column, PointFormat format, boolean trusted) {
+        int width = format.size();
+        if (column.remaining() % width != 0) {
+            throw new IllegalArgumentException("column is not a multiple of " + width + " bytes");
+        }
+        ECPoint[] points = new ECPoint[column.remaining() / width];
+        ByteBuffer in = column.duplicate();
+        byte[] encoded = new byte[width];
+        if (!trusted || format == PointFormat.COMPRESSED) {
+            for (int i = 0; i < points.length; i++) {
+                in.get(encoded);
+                points[i] = decodeEcPoint(encoded, format);
+            }
+            return points;
+        }
+        ECCurve curve = domainParams.getCurve();
+        int coordinate = PointFormat.RAW.size() / 2;
+        byte[] x = new byte[coordinate];
+        byte[] y = new byte[coordinate];
+        for (int i = 0; i < points.length; i++) {
+            if (format == PointFormat.UNCOMPRESSED && in.get() != 0x04) {
+                throw new IllegalArgumentException("Invalid point encoding");
+            }
+            in.get(x);
+            in.get(y);
+            points[i] = curve.createPoint(new BigInteger(1, x), new BigInteger(1, y));
+        }
+        return points;
+    }
+
 }
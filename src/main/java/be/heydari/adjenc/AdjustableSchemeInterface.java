@@ -1,10 +1,12 @@
 package be.heydari.adjenc;
 
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
 import org.bouncycastle.crypto.params.ECKeyParameters;
 import org.bouncycastle.math.ec.ECPoint;
 
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 
 public interface AdjustableSchemeInterface {
 
@@ -12,7 +14,32 @@ public interface AdjustableSchemeInterface {
     BigInteger genSecretKey();
 
     ECPoint encrypt(byte[] message, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException;
+    ECPoint[] encryptAll(byte[][] messages, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException;
+    List<ECPoint> encryptAll(List<byte[]> messages, byte[] messagePrfKey, BigInteger secretKey) throws NoSuchAlgorithmException;
+    byte[] encryptToBytes(byte[] message, byte[] messagePrfKey, BigInteger secretKey);
+    ECPoint[] encryptUnderKeys(byte[] message, byte[] messagePrfKey, BigInteger[] secretKeys);
+    PreparedScalar prepare(BigInteger scalar);
+    ECPoint encrypt(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey);
+    byte[] encryptToBytes(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey);
+    Ciphertext encryptLazy(byte[] message, byte[] messagePrfKey, PreparedScalar secretKey);
+    byte[] encryptX(byte[] message, byte[] messagePrfKey, BigInteger secretKey);
     BigInteger genDeltaToken(BigInteger oldSecretKey, BigInteger newSecretKey);
+    BigInteger composeDeltaTokens(BigInteger... deltaTokens);
+
+    ECPoint adjust(BigInteger deltaToken, ECPoint ciphertext);
+    ECPoint[] adjustAll(BigInteger deltaToken, ECPoint[] ciphertexts);
+    byte[][] adjustAll(BigInteger deltaToken, byte[][] encodedCiphertexts);
+    byte[] adjustBytes(BigInteger deltaToken, byte[] encodedCiphertext);
+    ECPoint adjust(PreparedScalar deltaToken, ECPoint ciphertext);
+    byte[] adjustBytes(PreparedScalar deltaToken, byte[] encodedCiphertext);
+    byte[] adjustX(BigInteger deltaToken, byte[] xCiphertext);
+    byte[] adjustX(PreparedScalar deltaToken, byte[] xCiphertext);
+    Ciphertext adjust(PreparedScalar deltaToken, Ciphertext ciphertext);
+    Ciphertext[] adjustAll(PreparedScalar deltaToken, Ciphertext[] ciphertexts);
+    Ciphertext[] adjust(PreparedScalar[] deltaTokens, Ciphertext ciphertext);
+    Ciphertext[][] adjustAll(PreparedScalar[] deltaTokens, Ciphertext[] ciphertexts);
+    byte[][] adjustBytes(PreparedScalar[] deltaTokens, byte[] encodedCiphertext);
+    byte[][][] adjustAllBytes(PreparedScalar[] deltaTokens, byte[][] encodedCiphertexts);
 
 
 }
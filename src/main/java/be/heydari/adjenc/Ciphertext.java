@@ -0,0 +1,130 @@
+package be.heydari.adjenc;
+
+import org.miracl.core.SECP256K1.ECP;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * A ciphertext kept in projective coordinates.
+ *
+ * The field inversion that brings a point to affine form is deferred until
+ * the ciphertext is encoded, and normalizeAll shares one inversion across
+ * a whole batch. equals compares projective points by cross-multiplication
+ * and never inverts.
+ *
+ * A ciphertext may be read from several threads, but normalizeAll must not
+ * run concurrently with other use of the same ciphertexts.
+ *
+ * @author Emad Heydari Beni
+ */
+public final class Ciphertext {
+
+    private final ECP point;
+    private volatile byte[] encoded;
+
+    Ciphertext(ECP point) {
+        this.point = point;
+    }
+
+    /**
+     * Decodes the encoding of AdjustableScheme.encodeEcPoint.
+     */
+    public static Ciphertext fromEncoded(byte[] encoded) {
+        if (encoded.length != AdjustableScheme.ENCODED_POINT_SIZE) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        ECP point = ECP.fromBytes(encoded);
+        if (point.is_infinity()) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        Ciphertext ciphertext = new Ciphertext(point);
+        ciphertext.encoded = encoded.clone();
+        return ciphertext;
+    }
+
+    ECP getPoint() {
+        return point;
+    }
+
+    /**
+     * The compressed encoding; costs an inversion unless the ciphertext was
+     * normalized or decoded.
+     */
+    public byte[] getEncoded() {
+        byte[] bytes = encoded;
+        if (bytes == null) {
+            bytes = new byte[AdjustableScheme.ENCODED_POINT_SIZE];
+            point.toBytes(bytes, true);
+            encoded = bytes;
+        }
+        return bytes.clone();
+    }
+
+    public boolean isNormalized() {
+        return encoded != null;
+    }
+
+    /**
+     * Brings all ciphertexts that are not yet normalized to affine form with
+     * a single field inversion and caches their encodings.
+     */
+    public static void normalizeAll(Ciphertext[] ciphertexts) {
+        Set<Ciphertext> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Ciphertext ciphertext : ciphertexts) {
+            if (ciphertext.encoded == null) {
+                pending.add(ciphertext);
+            }
+        }
+        ECP[] points = new ECP[pending.size()];
+        int i = 0;
+        for (Ciphertext ciphertext : pending) {
+            points[i++] = ciphertext.point;
+        }
+        ECP.affineAll(points);
+        for (Ciphertext ciphertext : pending) {
+            byte[] bytes = new byte[AdjustableScheme.ENCODED_POINT_SIZE];
+            ciphertext.point.toBytes(bytes, true);
+            ciphertext.encoded = bytes;
+        }
+    }
+
+    public static byte[][] encodeAll(Ciphertext[] ciphertexts) {
+        normalizeAll(ciphertexts);
+        byte[][] encoded = new byte[ciphertexts.length][];
+        for (int i = 0; i < ciphertexts.length; i++) {
+            encoded[i] = ciphertexts[i].encoded.clone();
+        }
+        return encoded;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Ciphertext)) {
+            return false;
+        }
+        Ciphertext other = (Ciphertext) o;
+        byte[] a = encoded;
+        byte[] b = other.encoded;
+        if (a != null && b != null) {
+            return Arrays.equals(a, b);
+        }
+        return point.equals(other.point);
+    }
+
+    /**
+     * Hashing needs the affine form, so it normalizes this ciphertext.
+     */
+    @Override
+    public int hashCode() {
+        if (encoded == null) {
+            getEncoded();
+        }
+        return Arrays.hashCode(encoded);
+    }
+}
@@ -0,0 +1,27 @@
+package be.heydari.adjenc;
+
+/**
+ * Fixed-width encodings of ciphertexts.
+ *
+ * COMPRESSED is the encoding of encodeEcPoint(p) and the smallest, but
+ * decoding it costs a field square root. UNCOMPRESSED (0x04||x||y) and RAW
+ * (x||y) carry y, so a trusted reader can decode them without any field
+ * arithmetic beyond loading the coordinates.
+ *
+ * @author Emad Heydari Beni
+ */
+public enum PointFormat {
+    COMPRESSED(33),
+    UNCOMPRESSED(65),
+    RAW(64);
+
+    private final int size;
+
+    PointFormat(int size) {
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+}
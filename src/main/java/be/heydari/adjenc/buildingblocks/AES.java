@@ -19,7 +19,7 @@ public class AES {
 
     private String provider;
     private String symmetricCryptoInstance;
-    private SecureRandom random;
+    private RandomnessProvider random;
     private int symmetricKeySize;
     private int symmetricIvLength;
 
@@ -32,7 +32,7 @@ public class AES {
         this.symmetricCryptoInstance = ALG + "/" + symmetricMode + "/" + symmetricPadding;
         this.symmetricKeySize = symmetricKeySize;
         this.symmetricIvLength = symmetricIvLength;
-        this.random = SecureRandom.getInstanceStrong();
+        this.random = RandomnessProvider.getInstance(secureRandomAlg);
     }
 
     public byte[] encrypt(byte[] data, byte[] key) throws Exception {
@@ -87,7 +87,7 @@ public class AES {
     }
 
     public SecureRandom getRandom() {
-        return random;
+        return random.current();
     }
 
     public String getAlgorithmName() {
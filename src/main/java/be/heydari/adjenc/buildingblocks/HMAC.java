@@ -1,14 +1,12 @@
 package be.heydari.adjenc.buildingblocks;
 
 import com.google.common.base.Charsets;
-import org.bouncycastle.crypto.digests.Blake2bDigest;
-import org.bouncycastle.crypto.macs.HMac;
-import org.bouncycastle.crypto.params.KeyParameter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.encoders.Hex;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.nio.ByteBuffer;
 import java.security.Security;
 
 /**
@@ -20,9 +18,15 @@ import java.security.Security;
  */
 public class HMAC {
 
-    private SecureRandom random;
+    private static final int KEYED_INSTANCES = 16;
+
+    private RandomnessProvider random;
     private int keyLength;
     private int digestSize;
+    private volatile KeyedHMAC lastKeyed;
+    private final Cache<ByteBuffer, KeyedHMAC> keyedInstances = CacheBuilder.newBuilder()
+            .maximumSize(KEYED_INSTANCES)
+            .build();
 
     public HMAC(String secureRandomAlg, int keyLength, int digestSize) {
         addSecurityProvider(secureRandomAlg);
@@ -51,14 +55,26 @@ public class HMAC {
     }
 
     public byte[] hash(byte[] message, byte[] key) {
-        HMac hmac = new HMac(new Blake2bDigest(digestSize));
-        hmac.init(new KeyParameter(key));
-        byte[] result = new byte[hmac.getMacSize()];
-
-        hmac.update(message, 0, message.length);
-        hmac.doFinal(result, 0);
+        return keyed(key).hash(message);
+    }
 
-        return result;
+    /**
+     * Returns the same KeyedHMAC for the same key, so per-row callers do not
+     * re-process the key for every message. The last key is checked first;
+     * the KeyedHMACs of the 16 most recently used keys are kept, so callers
+     * that interleave a few PRF keys on one HMAC also reuse them.
+     */
+    public KeyedHMAC keyed(byte[] key) {
+        KeyedHMAC keyed = lastKeyed;
+        if (keyed == null || !keyed.isKeyedWith(key)) {
+            keyed = keyedInstances.getIfPresent(ByteBuffer.wrap(key));
+            if (keyed == null) {
+                keyed = new KeyedHMAC(key, digestSize);
+                keyedInstances.put(ByteBuffer.wrap(keyed.getKey()), keyed);
+            }
+            lastKeyed = keyed;
+        }
+        return keyed;
     }
 
     public byte[] hash(String message, byte[] key) {
@@ -67,10 +83,6 @@ public class HMAC {
 
     private void addSecurityProvider(String secureRandomAlg) {
         Security.addProvider(new BouncyCastleProvider());
-        try {
-            random = SecureRandom.getInstanceStrong();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
+        random = RandomnessProvider.getInstance(secureRandomAlg);
     }
 }
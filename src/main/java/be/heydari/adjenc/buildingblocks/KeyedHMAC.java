@@ -0,0 +1,62 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import java.util.Arrays;
+
+/**
+ * HMAC-Blake2b bound to one key.
+ *
+ * Keys longer than the Blake2b block are hashed and padded once when a
+ * thread first uses this object. Afterwards each message only restores the
+ * padded inner state, which HMac does on its own after every doFinal, so
+ * no key processing or allocation happens per message. Blake2bDigest keeps
+ * a full pad block buffered until more input follows, so a message still
+ * costs four compressions; saved digest states would not reduce that.
+ *
+ * @author Emad Heydari Beni
+ */
+public class KeyedHMAC {
+
+    private final byte[] key;
+    private final int digestSize;
+    private final ThreadLocal<HMac> mac;
+
+    public KeyedHMAC(byte[] key, int digestSize) {
+        this.key = key.clone();
+        this.digestSize = digestSize;
+        this.mac = ThreadLocal.withInitial(this::newMac);
+    }
+
+    private HMac newMac() {
+        HMac hmac = new HMac(new Blake2bDigest(digestSize));
+        hmac.init(new KeyParameter(key));
+        return hmac;
+    }
+
+    public byte[] hash(byte[] message) {
+        byte[] result = new byte[getMacSize()];
+        hash(message, result, 0);
+        return result;
+    }
+
+    public void hash(byte[] message, byte[] out, int outOff) {
+        HMac hmac = mac.get();
+        hmac.update(message, 0, message.length);
+        hmac.doFinal(out, outOff);
+    }
+
+    public int getMacSize() {
+        return digestSize / 8;
+    }
+
+    public byte[] getKey() {
+        return key.clone();
+    }
+
+    public boolean isKeyedWith(byte[] otherKey) {
+        return Arrays.equals(key, otherKey);
+    }
+}
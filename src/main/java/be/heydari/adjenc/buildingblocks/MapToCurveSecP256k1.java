@@ -56,6 +56,19 @@ public class MapToCurveSecP256k1 {
         return ECP.map2point(h);
     }
 
+    /**
+     * Batch variant of mapToPoint with identical results; the constant
+     * parts of the map are computed once and inversions are shared.
+     */
+    public ECP[] mapToPoints(byte[][] digests) {
+        BIG q = new BIG(ROM.Modulus);
+        FP[] h = new FP[digests.length];
+        for (int i = 0; i < digests.length; i++) {
+            h[i] = new FP(DBIG.fromBytes(digests[i]).mod(q));
+        }
+        return ECP.map2points(h);
+    }
+
     /*public byte[] toBytes(ECP p) {
         BIG x = p.getX();
         p.getx().
@@ -82,6 +95,33 @@ public class MapToCurveSecP256k1 {
         return convertToECPoint(ecp);
     }
 
+    public ECP hmacToCurve(byte[] message, KeyedHMAC keyedHmac) {
+        byte[] mac = keyedHmac.hash(message);
+        return mapToPoint(mac);
+    }
+
+    public ECPoint hmacToCurveECPoint(byte[] message, KeyedHMAC keyedHmac) {
+        ECP ecp = hmacToCurve(message, keyedHmac);
+        return convertToECPoint(ecp);
+    }
+
+    public ECP[] hmacToCurve(byte[][] messages, KeyedHMAC keyedHmac) {
+        byte[][] macs = new byte[messages.length][];
+        for (int i = 0; i < messages.length; i++) {
+            macs[i] = keyedHmac.hash(messages[i]);
+        }
+        return mapToPoints(macs);
+    }
+
+    public ECPoint[] hmacToCurveECPoint(byte[][] messages, KeyedHMAC keyedHmac) {
+        ECP[] ecps = hmacToCurve(messages, keyedHmac);
+        ECPoint[] points = new ECPoint[ecps.length];
+        for (int i = 0; i < ecps.length; i++) {
+            points[i] = convertToECPoint(ecps[i]);
+        }
+        return points;
+    }
+
     public ECPoint convertToECPoint(ECP point) {
         byte[] xBytes = new byte[CONFIG_BIG.MODBYTES];
         point.getX().toBytes(xBytes);
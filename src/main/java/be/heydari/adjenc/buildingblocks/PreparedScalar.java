@@ -0,0 +1,61 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.util.BigIntegers;
+import org.miracl.core.SECP256K1.BIG;
+import org.miracl.core.SECP256K1.CONFIG_BIG;
+import org.miracl.core.SECP256K1.CONFIG_CURVE;
+import org.miracl.core.SECP256K1.ECP;
+
+import java.math.BigInteger;
+
+/**
+ * A secret key or delta token prepared once to be applied to many points.
+ *
+ * It holds the GLV split and the signed windows of ECP.glvmul, which is
+ * evaluated in constant time with respect to the scalar. The scalar itself
+ * is not exposed.
+ *
+ * @author Emad Heydari Beni
+ */
+public class PreparedScalar {
+
+    private final BIG big;
+    private final byte[] windows;
+
+    public PreparedScalar(ECCurve curve, BigInteger scalar) {
+        this.big = BIG.fromBytes(BigIntegers.asUnsignedByteArray(CONFIG_BIG.MODBYTES, scalar.mod(curve.getOrder())));
+        this.windows = CONFIG_CURVE.USE_GLV ? ECP.glvrecode(big) : null;
+    }
+
+    /**
+     * Computes (scalar)P in projective form.
+     */
+    public ECP mul(ECP p) {
+        if (p.is_infinity() || big.iszilch()) {
+            return new ECP();
+        }
+        return windows != null ? p.glvmul(windows) : p.mul(big);
+    }
+
+    /**
+     * Precomputes P once for mul(ECP[]), so that several prepared scalars
+     * can be applied to the same point.
+     */
+    public static ECP[] precompute(ECP p) {
+        if (p.is_infinity()) {
+            return new ECP[0];
+        }
+        return CONFIG_CURVE.USE_GLV ? p.glvtable() : new ECP[]{p};
+    }
+
+    /**
+     * Computes (scalar)P in projective form, for a table from precompute(P).
+     */
+    public ECP mul(ECP[] table) {
+        if (table.length == 0 || big.iszilch()) {
+            return new ECP();
+        }
+        return windows != null ? ECP.glvmul(table, windows) : table[0].mul(big);
+    }
+}
@@ -2,8 +2,6 @@ package be.heydari.adjenc.buildingblocks;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.Security;
 
 /**
@@ -11,9 +9,10 @@ import java.security.Security;
  */
 public class Random {
 
-    private SecureRandom random;
+    private RandomnessProvider random;
 
     public Random() {
+        random = RandomnessProvider.getInstance();
     }
 
     public Random(String secureRandomAlg) {
@@ -28,10 +27,6 @@ public class Random {
 
     private void addSecurityProvider(String secureRandomAlg) {
         Security.addProvider(new BouncyCastleProvider());
-        try {
-            random = SecureRandom.getInstanceStrong();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
+        random = RandomnessProvider.getInstance(secureRandomAlg);
     }
 }
@@ -0,0 +1,115 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.prng.EntropySource;
+import org.bouncycastle.crypto.prng.EntropySourceProvider;
+import org.bouncycastle.crypto.prng.SP800SecureRandomBuilder;
+import org.bouncycastle.util.Pack;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking randomness for keys, IVs and secret scalars.
+ *
+ * A seed source is instantiated once per algorithm and only read through
+ * nextBytes, which never blocks for NativePRNG(NonBlocking). Every thread
+ * draws from its own SP 800-90A Hash_DRBG (SHA-512) seeded from that
+ * source, so concurrent callers do not contend on one SecureRandom.
+ *
+ * @author Emad Heydari Beni
+ */
+public class RandomnessProvider {
+
+    public static final String DEFAULT_SEED_ALG = "NativePRNGNonBlocking";
+
+    private static final int SECURITY_STRENGTH = 256;
+    private static final ConcurrentMap<String, RandomnessProvider> PROVIDERS = new ConcurrentHashMap<>();
+
+    private final SecureRandom seedSource;
+    private final AtomicLong instances = new AtomicLong();
+    private final ThreadLocal<SecureRandom> drbg = ThreadLocal.withInitial(this::newDrbg);
+
+    private RandomnessProvider(SecureRandom seedSource) {
+        this.seedSource = seedSource;
+    }
+
+    public static RandomnessProvider getInstance() {
+        return getInstance(DEFAULT_SEED_ALG);
+    }
+
+    /**
+     * Returns the provider seeded by the given SecureRandom algorithm,
+     * falling back to the platform default if it is not available.
+     */
+    public static RandomnessProvider getInstance(String seedAlg) {
+        return PROVIDERS.computeIfAbsent(seedAlg, alg -> new RandomnessProvider(seedSource(alg)));
+    }
+
+    private static SecureRandom seedSource(String seedAlg) {
+        try {
+            return SecureRandom.getInstance(seedAlg);
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * The DRBG of the calling thread; it must not be shared with other threads.
+     */
+    public SecureRandom current() {
+        return drbg.get();
+    }
+
+    public void nextBytes(byte[] bytes) {
+        drbg.get().nextBytes(bytes);
+    }
+
+    public byte[] generate(int size) {
+        byte[] bytes = new byte[size];
+        nextBytes(bytes);
+        return bytes;
+    }
+
+    private SecureRandom newDrbg() {
+        // the nonce only has to be unique per instantiation
+        byte[] nonce = Pack.longToBigEndian(instances.incrementAndGet());
+        return new SP800SecureRandomBuilder(new SeedSourceProvider(seedSource))
+                .setSecurityStrength(SECURITY_STRENGTH)
+                .setEntropyBitsRequired(SECURITY_STRENGTH)
+                .buildHash(new SHA512Digest(), nonce, false);
+    }
+
+    private static final class SeedSourceProvider implements EntropySourceProvider {
+        private final SecureRandom seedSource;
+
+        SeedSourceProvider(SecureRandom seedSource) {
+            this.seedSource = seedSource;
+        }
+
+        @Override
+        public EntropySource get(int bitsRequired) {
+            return new EntropySource() {
+                @Override
+                public boolean isPredictionResistant() {
+                    return false;
+                }
+
+                @Override
+                public byte[] getEntropy() {
+                    byte[] entropy = new byte[(bitsRequired + 7) / 8];
+                    seedSource.nextBytes(entropy);
+                    return entropy;
+                }
+
+                @Override
+                public int entropySize() {
+                    return bitsRequired;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.math.ec.ECCurve;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.ECPointMap;
+import org.bouncycastle.math.ec.WNafPreCompInfo;
+import org.bouncycastle.math.ec.WNafUtil;
+import org.bouncycastle.math.ec.endo.ECEndomorphism;
+import org.bouncycastle.math.ec.endo.GLVEndomorphism;
+
+import java.math.BigInteger;
+
+/**
+ * A scalar that is reduced, GLV-decomposed and wNAF-recoded once,
+ * so it can be applied to many points without repeating that work.
+ * The evaluation mirrors BouncyCastle's interleaved GLV multiplier.
+ *
+ * @author Emad Heydari Beni
+ */
+public class RecodedScalar {
+
+    private final ECCurve curve;
+    private final ECPointMap pointMap;
+    private final boolean[] negs;
+    private final int[] widths;
+    private final byte[][] wnafs;
+
+    public RecodedScalar(ECCurve curve, BigInteger scalar) {
+        this.curve = curve;
+        BigInteger k = scalar.mod(curve.getOrder());
+        BigInteger[] ks;
+        ECEndomorphism endomorphism = curve.getEndomorphism();
+        if (endomorphism instanceof GLVEndomorphism) {
+            ks = ((GLVEndomorphism) endomorphism).decomposeScalar(k);
+            pointMap = endomorphism.getPointMap();
+        } else {
+            ks = new BigInteger[]{k};
+            pointMap = null;
+        }
+
+        negs = new boolean[ks.length];
+        widths = new int[ks.length];
+        wnafs = new byte[ks.length][];
+        for (int i = 0; i < ks.length; i++) {
+            negs[i] = ks[i].signum() < 0;
+            BigInteger ki = ks[i].abs();
+            widths[i] = Math.max(2, Math.min(16, WNafUtil.getWindowSize(ki.bitLength())));
+            wnafs[i] = WNafUtil.generateWindowNaf(widths[i], ki);
+        }
+    }
+
+    /**
+     * Computes (scalar)P; the result is not normalized.
+     */
+    public ECPoint multiply(ECPoint p) {
+        if (p.isInfinity()) {
+            return p;
+        }
+        WNafPreCompInfo[] infos = new WNafPreCompInfo[wnafs.length];
+        infos[0] = WNafUtil.precompute(p, widths[0], true);
+        if (pointMap != null) {
+            ECPoint q = WNafUtil.mapPointWithPrecomp(p, widths[1], true, pointMap);
+            infos[1] = WNafUtil.getWNafPreCompInfo(q);
+        }
+
+        int len = 0;
+        for (byte[] wnaf : wnafs) {
+            len = Math.max(len, wnaf.length);
+        }
+
+        ECPoint infinity = curve.getInfinity();
+        ECPoint R = infinity;
+        int zeroes = 0;
+        for (int i = len - 1; i >= 0; i--) {
+            ECPoint r = infinity;
+            for (int j = 0; j < wnafs.length; j++) {
+                byte[] wnaf = wnafs[j];
+                int wi = i < wnaf.length ? wnaf[i] : 0;
+                if (wi != 0) {
+                    int n = Math.abs(wi);
+                    ECPoint[] table = (wi < 0 == negs[j]) ? infos[j].getPreComp() : infos[j].getPreCompNeg();
+                    r = r.add(table[n >>> 1]);
+                }
+            }
+            if (r.isInfinity()) {
+                zeroes++;
+                continue;
+            }
+            if (zeroes > 0) {
+                R = R.timesPow2(zeroes);
+                zeroes = 0;
+            }
+            R = R.twicePlus(r);
+        }
+        if (zeroes > 0) {
+            R = R.timesPow2(zeroes);
+        }
+        return R;
+    }
+}
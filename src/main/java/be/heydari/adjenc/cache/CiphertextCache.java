@@ -0,0 +1,221 @@
+package be.heydari.adjenc.cache;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.PointFormat;
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import org.bouncycastle.math.ec.ECPoint;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opt-in memo cache in front of AdjustableScheme.encrypt for one
+ * prfKey/secretKey pair. Encryption is deterministic, so skewed columns
+ * can reuse the ciphertexts of their hot values.
+ *
+ * Eviction is a segmented LRU: new entries enter a probation segment and
+ * move to a protected segment on their second use, so a scan of one-off
+ * values cannot flush the frequently used ones. The cache is bounded by
+ * entry count or by an estimate of the bytes held.
+ *
+ * Ciphertexts are stored in the 64-byte RAW format and every hit returns a
+ * new ECPoint, so the multiplication tables BouncyCastle attaches to a
+ * point that callers adjust never end up in the cache, and the byte bound
+ * holds. The cache is thread-safe; encryptions of misses run outside its
+ * lock.
+ *
+ * @author Emad Heydari Beni
+ */
+public class CiphertextCache {
+
+    /** Estimated bytes per entry on top of the plaintext: the encoded point, its key and the map node */
+    public static final int ENTRY_OVERHEAD = 192;
+
+    private static final double PROTECTED_SHARE = 0.8;
+
+    private final AdjustableScheme scheme;
+    private final KeyedHMAC messagePrf;
+    private final PreparedScalar secretKey;
+    private final boolean weighBytes;
+    private final long maximumWeight;
+    private final long protectedMaximum;
+
+    private final LinkedHashMap<Key, byte[]> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Key, byte[]> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+    private long probationWeight;
+    private long protectedWeight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    private CiphertextCache(AdjustableScheme scheme, byte[] messagePrfKey, BigInteger secretKey,
+                            long maximumWeight, boolean weighBytes) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("cache bound must be positive");
+        }
+        this.scheme = scheme;
+        this.messagePrf = scheme.genMessagePrf(messagePrfKey);
+        this.secretKey = scheme.prepare(secretKey);
+        this.maximumWeight = maximumWeight;
+        this.weighBytes = weighBytes;
+        this.protectedMaximum = (long) (maximumWeight * PROTECTED_SHARE);
+    }
+
+    public static CiphertextCache maxEntries(AdjustableScheme scheme, byte[] messagePrfKey, BigInteger secretKey,
+                                             long maxEntries) {
+        return new CiphertextCache(scheme, messagePrfKey, secretKey, maxEntries, false);
+    }
+
+    /**
+     * Bounds the cache by the plaintext bytes plus ENTRY_OVERHEAD per entry.
+     */
+    public static CiphertextCache maxBytes(AdjustableScheme scheme, byte[] messagePrfKey, BigInteger secretKey,
+                                           long maxBytes) {
+        return new CiphertextCache(scheme, messagePrfKey, secretKey, maxBytes, true);
+    }
+
+    /**
+     * Same result as scheme.encrypt(message, messagePrfKey, secretKey).
+     */
+    public ECPoint encrypt(byte[] message) {
+        Key key = new Key(message);
+        byte[] encoded;
+        synchronized (this) {
+            encoded = lookup(key);
+            if (encoded != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (encoded != null) {
+            return scheme.decodeEcPoint(encoded, PointFormat.RAW);
+        }
+        ECPoint ciphertext = scheme.encrypt(message, messagePrf, secretKey);
+        encoded = scheme.encodeEcPoint(ciphertext, PointFormat.RAW);
+        synchronized (this) {
+            insert(new Key(message.clone()), encoded);
+        }
+        return ciphertext;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    public synchronized long size() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    /**
+     * Entries or estimated bytes held, depending on how the cache is bounded.
+     */
+    public synchronized long weight() {
+        return probationWeight + protectedWeight;
+    }
+
+    public synchronized void clear() {
+        probation.clear();
+        protectedSegment.clear();
+        probationWeight = 0;
+        protectedWeight = 0;
+    }
+
+    private byte[] lookup(Key key) {
+        byte[] ciphertext = protectedSegment.get(key);
+        if (ciphertext != null) {
+            return ciphertext;
+        }
+        ciphertext = probation.remove(key);
+        if (ciphertext != null) {
+            long weight = weigh(key);
+            probationWeight -= weight;
+            protectedSegment.put(key, ciphertext);
+            protectedWeight += weight;
+            demoteProtected();
+        }
+        return ciphertext;
+    }
+
+    private void insert(Key key, byte[] ciphertext) {
+        long weight = weigh(key);
+        if (weight > maximumWeight || protectedSegment.containsKey(key) || probation.containsKey(key)) {
+            return;
+        }
+        probation.put(key, ciphertext);
+        probationWeight += weight;
+        evict();
+    }
+
+    private void demoteProtected() {
+        Iterator<Map.Entry<Key, byte[]>> eldest = protectedSegment.entrySet().iterator();
+        while (protectedWeight > protectedMaximum && eldest.hasNext()) {
+            Map.Entry<Key, byte[]> entry = eldest.next();
+            eldest.remove();
+            long weight = weigh(entry.getKey());
+            protectedWeight -= weight;
+            probation.put(entry.getKey(), entry.getValue());
+            probationWeight += weight;
+        }
+        evict();
+    }
+
+    private void evict() {
+        evict(probation.entrySet().iterator(), true);
+        evict(protectedSegment.entrySet().iterator(), false);
+    }
+
+    private void evict(Iterator<Map.Entry<Key, byte[]>> eldest, boolean fromProbation) {
+        while (probationWeight + protectedWeight > maximumWeight && eldest.hasNext()) {
+            long weight = weigh(eldest.next().getKey());
+            eldest.remove();
+            if (fromProbation) {
+                probationWeight -= weight;
+            } else {
+                protectedWeight -= weight;
+            }
+            evictions++;
+        }
+    }
+
+    private long weigh(Key key) {
+        return weighBytes ? key.bytes.length + ENTRY_OVERHEAD : 1;
+    }
+
+    private static final class Key {
+        private final byte[] bytes;
+        private final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
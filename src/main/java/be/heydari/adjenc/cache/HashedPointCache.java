@@ -0,0 +1,184 @@
+package be.heydari.adjenc.cache;
+
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
+import be.heydari.adjenc.buildingblocks.MapToCurveSecP256k1;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.miracl.core.SECP256K1.ECP;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrent, size-bounded cache of hashed points P = MapToCurve(PRF(message, prfKey)).
+ *
+ * P does not depend on the secret key, so one cache can serve every column
+ * key that shares a prfKey and only the final multiplication is repeated.
+ * Points are kept as affine MIRACL points, which carry no precomputation,
+ * so every entry has the same size (a few hundred bytes with its message)
+ * and maximumSize bounds the heap the cache uses. Callers get a copy.
+ *
+ * Each distinct prfKey is given a small id the first time it is seen, and
+ * entries are keyed on (id, message); the PRF key itself is only hashed
+ * again when the caller switches to another KeyedHMAC. The ids are looked
+ * up by a Blake2b digest of the key, so no key material is stored, and at
+ * most MAXIMUM_KEYS of them are kept. Ids are never reused: the entries of
+ * an evicted id are no longer found and age out of the cache.
+ *
+ * @author Emad Heydari Beni
+ */
+public class HashedPointCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1 << 20;
+    public static final long MAXIMUM_KEYS = 1024;
+
+    private final Cache<Key, ECP> points;
+    private final Cache<ByteBuffer, Integer> keyIds = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_KEYS)
+            .build();
+    private final AtomicInteger nextKeyId = new AtomicInteger();
+    private volatile Segment lastSegment;
+
+    public HashedPointCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public HashedPointCache(long maximumSize) {
+        this.points = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    public ECP get(byte[] message, KeyedHMAC messagePrf, MapToCurveSecP256k1 mapToCurve) {
+        int keyId = keyId(messagePrf);
+        ECP P = points.getIfPresent(new Key(keyId, message));
+        if (P == null) {
+            P = mapToCurve.hmacToCurve(message, messagePrf);
+            P.affine();
+            points.put(new Key(keyId, message.clone()), P);
+        }
+        return copyOf(P);
+    }
+
+    /**
+     * Batch variant of get; the misses are mapped to the curve together.
+     */
+    public ECP[] getAll(byte[][] messages, KeyedHMAC messagePrf, MapToCurveSecP256k1 mapToCurve) {
+        int keyId = keyId(messagePrf);
+        ECP[] result = new ECP[messages.length];
+        List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            ECP P = points.getIfPresent(new Key(keyId, messages[i]));
+            if (P == null) {
+                misses.add(i);
+            } else {
+                result[i] = copyOf(P);
+            }
+        }
+        if (misses.isEmpty()) {
+            return result;
+        }
+        byte[][] missed = new byte[misses.size()][];
+        for (int i = 0; i < missed.length; i++) {
+            missed[i] = messages[misses.get(i)];
+        }
+        ECP[] mapped = mapToCurve.hmacToCurve(missed, messagePrf);
+        for (int i = 0; i < mapped.length; i++) {
+            mapped[i].affine();
+            points.put(new Key(keyId, missed[i].clone()), mapped[i]);
+            result[misses.get(i)] = copyOf(mapped[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Hit, miss and eviction counts.
+     */
+    public CacheStats stats() {
+        return points.stats();
+    }
+
+    public long size() {
+        return points.size();
+    }
+
+    public void invalidateAll() {
+        lastSegment = null;
+        keyIds.invalidateAll();
+        points.invalidateAll();
+    }
+
+    private int keyId(KeyedHMAC messagePrf) {
+        Segment last = lastSegment;
+        if (last != null && last.messagePrf == messagePrf) {
+            return last.keyId;
+        }
+        int keyId;
+        try {
+            keyId = keyIds.get(ByteBuffer.wrap(keyDigest(messagePrf)), nextKeyId::getAndIncrement);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        lastSegment = new Segment(messagePrf, keyId);
+        return keyId;
+    }
+
+    private static byte[] keyDigest(KeyedHMAC messagePrf) {
+        byte[] key = messagePrf.getKey();
+        Blake2bDigest digest = new Blake2bDigest(256);
+        digest.update(key, 0, key.length);
+        Arrays.fill(key, (byte) 0);
+        byte[] keyDigest = new byte[digest.getDigestSize()];
+        digest.doFinal(keyDigest, 0);
+        return keyDigest;
+    }
+
+    private static ECP copyOf(ECP P) {
+        ECP copy = new ECP();
+        copy.copy(P);
+        return copy;
+    }
+
+    private static final class Segment {
+        private final KeyedHMAC messagePrf;
+        private final int keyId;
+
+        Segment(KeyedHMAC messagePrf, int keyId) {
+            this.messagePrf = messagePrf;
+            this.keyId = keyId;
+        }
+    }
+
+    private static final class Key {
+        private final int keyId;
+        private final byte[] message;
+        private final int hash;
+
+        Key(int keyId, byte[] message) {
+            this.keyId = keyId;
+            this.message = message;
+            this.hash = 31 * keyId + Arrays.hashCode(message);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return keyId == other.keyId && Arrays.equals(message, other.message);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
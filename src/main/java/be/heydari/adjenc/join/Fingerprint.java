@@ -0,0 +1,80 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 64- and 128-bit fingerprints of ciphertexts under a common key, for
+ * partitioning, hash tables and filters on primitive keys.
+ *
+ * The x-coordinate of a ciphertext is uniformly distributed, so the
+ * fingerprint is simply its leading bits: bytes 0-7 of x give the 64-bit
+ * fingerprint and bytes 8-15 the second half of the 128-bit one. Both the
+ * compressed encoding of encodeEcPoint and the x-only encoding of encryptX
+ * are accepted; they have the same fingerprint. Equal fingerprints only
+ * mean the ciphertexts are likely equal (P and -P always collide), so a
+ * match must be confirmed with verify on the full encodings.
+ *
+ * @author Emad Heydari Beni
+ */
+public final class Fingerprint {
+
+    private Fingerprint() {
+    }
+
+    public static long fingerprint64(byte[] encoded) {
+        return ByteBuffer.wrap(encoded).getLong(xOffset(encoded.length));
+    }
+
+    /**
+     * The high and low halves of the 128-bit fingerprint.
+     */
+    public static long[] fingerprint128(byte[] encoded) {
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        int offset = xOffset(encoded.length);
+        return new long[]{buffer.getLong(offset), buffer.getLong(offset + Long.BYTES)};
+    }
+
+    /**
+     * 64-bit fingerprint of the compressed encoding at the absolute offset of a column.
+     */
+    public static long fingerprint64(ByteBuffer column, int offset) {
+        return column.getLong(offset + 1);
+    }
+
+    /**
+     * Low half of the 128-bit fingerprint of the compressed encoding at the
+     * absolute offset of a column; the high half is fingerprint64.
+     */
+    public static long fingerprint128Low(ByteBuffer column, int offset) {
+        return column.getLong(offset + 1 + Long.BYTES);
+    }
+
+    /**
+     * Confirms a fingerprint match on the full encodings.
+     */
+    public static boolean verify(byte[] a, byte[] b) {
+        return Arrays.equals(a, b);
+    }
+
+    public static boolean verify(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+        for (int i = 0; i < 32; i += Long.BYTES) {
+            if (a.getLong(aOffset + i) != b.getLong(bOffset + i)) {
+                return false;
+            }
+        }
+        return a.get(aOffset + 32) == b.get(bOffset + 32);
+    }
+
+    private static int xOffset(int length) {
+        if (length == AdjustableScheme.ENCODED_POINT_SIZE) {
+            return 1;
+        }
+        if (length == AdjustableScheme.X_ONLY_SIZE) {
+            return 0;
+        }
+        throw new IllegalArgumentException("Invalid point encoding");
+    }
+}
@@ -0,0 +1,216 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.rekey.RekeyEngine;
+import be.heydari.adjenc.rekey.RekeyJob;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory equi-join over two columns of encoded ciphertexts.
+ *
+ * Both columns are first adjusted to a common key with their delta tokens
+ * (a null token means the column already is under the common key). The
+ * smaller side is then hash-partitioned into independent off-heap tables
+ * that are built in parallel, and the other side is probed in parallel chunks.
+ * Partitioning and probing both hand out probeRows rows per task.
+ * Row ids are the positions of the rows in their column.
+ *
+ * @author Emad Heydari Beni
+ */
+public class HashJoin {
+
+    public static final int DEFAULT_PARTITIONS = 64;
+    public static final int DEFAULT_PROBE_ROWS = 1 << 16;
+
+    private final RekeyEngine rekeyEngine;
+    private final Executor executor;
+    private final int partitions;
+    private final int probeRows;
+
+    public HashJoin(AdjustableScheme scheme) {
+        this(scheme, ForkJoinPool.commonPool(), DEFAULT_PARTITIONS, DEFAULT_PROBE_ROWS);
+    }
+
+    public HashJoin(AdjustableScheme scheme, Executor executor, int partitions, int probeRows) {
+        if (Integer.bitCount(partitions) != 1) {
+            throw new IllegalArgumentException("number of partitions must be a power of two");
+        }
+        if (probeRows <= 0) {
+            throw new IllegalArgumentException("probe chunk size must be positive");
+        }
+        this.rekeyEngine = new RekeyEngine(scheme, executor,
+                RekeyEngine.DEFAULT_PARTITION_ROWS, RekeyEngine.DEFAULT_CHUNK_ROWS);
+        this.executor = executor;
+        this.partitions = partitions;
+        this.probeRows = probeRows;
+    }
+
+    public void join(ByteBuffer left, BigInteger leftDeltaToken,
+                     ByteBuffer right, BigInteger rightDeltaToken,
+                     JoinSink sink) throws InterruptedException, ExecutionException {
+        ByteBuffer adjustedLeft = allocateLike(left, leftDeltaToken);
+        ByteBuffer adjustedRight = allocateLike(right, rightDeltaToken);
+        RekeyJob leftJob = leftDeltaToken == null ? null : rekeyEngine.rekey(leftDeltaToken, left, adjustedLeft);
+        RekeyJob rightJob = rightDeltaToken == null ? null : rekeyEngine.rekey(rightDeltaToken, right, adjustedRight);
+        if (leftJob != null) {
+            leftJob.await();
+        }
+        if (rightJob != null) {
+            rightJob.await();
+        }
+
+        boolean buildLeft = adjustedLeft.remaining() <= adjustedRight.remaining();
+        OffHeapPointTable[] tables = build(buildLeft ? adjustedLeft : adjustedRight);
+        try {
+            if (buildLeft) {
+                probe(tables, adjustedRight, (probeRow, buildRow) -> sink.accept(buildRow, probeRow));
+            } else {
+                probe(tables, adjustedLeft, sink);
+            }
+        } finally {
+            close(tables);
+        }
+    }
+
+    private static ByteBuffer allocateLike(ByteBuffer column, BigInteger deltaToken) {
+        if (column.remaining() % AdjustableScheme.ENCODED_POINT_SIZE != 0) {
+            throw new IllegalArgumentException("column is not a multiple of "
+                    + AdjustableScheme.ENCODED_POINT_SIZE + " bytes");
+        }
+        return deltaToken == null ? column.duplicate() : ByteBuffer.allocate(column.remaining());
+    }
+
+    /**
+     * Partitions the column in one histogram pass and one scatter pass over
+     * chunks of rows, then builds the table of every partition from its own
+     * rows, so each row is read a fixed number of times whatever the number
+     * of partitions.
+     */
+    private OffHeapPointTable[] build(ByteBuffer column) throws InterruptedException, ExecutionException {
+        int width = AdjustableScheme.ENCODED_POINT_SIZE;
+        int rows = column.remaining() / width;
+        int base = column.position();
+        int mask = partitions - 1;
+        int chunks = (rows + probeRows - 1) / probeRows;
+
+        int[][] cursors = new int[chunks][partitions];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            tasks[c] = CompletableFuture.runAsync(() -> {
+                int last = Math.min(rows, (chunk + 1) * probeRows);
+                for (int row = chunk * probeRows; row < last; row++) {
+                    cursors[chunk][partitionBits(column, base + row * width) & mask]++;
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+
+        int[][] partitionRows = new int[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            int size = 0;
+            for (int c = 0; c < chunks; c++) {
+                int count = cursors[c][p];
+                cursors[c][p] = size;
+                size += count;
+            }
+            partitionRows[p] = new int[size];
+        }
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            tasks[c] = CompletableFuture.runAsync(() -> {
+                int[] cursor = cursors[chunk];
+                int last = Math.min(rows, (chunk + 1) * probeRows);
+                for (int row = chunk * probeRows; row < last; row++) {
+                    int p = partitionBits(column, base + row * width) & mask;
+                    partitionRows[p][cursor[p]++] = row;
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+
+        OffHeapPointTable[] tables = new OffHeapPointTable[partitions];
+        CompletableFuture<?>[] builds = new CompletableFuture<?>[partitions];
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            builds[p] = CompletableFuture.runAsync(() -> {
+                int[] members = partitionRows[partition];
+                OffHeapPointTable table = new OffHeapPointTable(members.length);
+                tables[partition] = table;
+                for (int row : members) {
+                    table.put(column, base + row * width, row);
+                }
+            }, executor);
+        }
+        try {
+            CompletableFuture.allOf(builds).get();
+        } catch (ExecutionException e) {
+            // allOf fails only once every partition is done, so nothing is still writing
+            close(tables);
+            throw e;
+        }
+        return tables;
+    }
+
+    private static void close(OffHeapPointTable[] tables) {
+        for (OffHeapPointTable table : tables) {
+            if (table != null) {
+                table.close();
+            }
+        }
+    }
+
+    /**
+     * Probes the tables; the sink receives (probeRowId, buildRowId).
+     */
+    private void probe(OffHeapPointTable[] tables, ByteBuffer column, JoinSink sink)
+            throws InterruptedException, ExecutionException {
+        int width = AdjustableScheme.ENCODED_POINT_SIZE;
+        int rows = column.remaining() / width;
+        int base = column.position();
+        int mask = partitions - 1;
+        int chunks = (rows + probeRows - 1) / probeRows;
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int first = c * probeRows;
+            int last = Math.min(rows, first + probeRows);
+            tasks[c] = CompletableFuture.runAsync(() -> {
+                ProbeMatches matches = new ProbeMatches(sink);
+                for (int row = first; row < last; row++) {
+                    int offset = base + row * width;
+                    matches.probeRow = row;
+                    tables[partitionBits(column, offset) & mask].get(column, offset, matches);
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+    }
+
+    /**
+     * Top half of the 64-bit fingerprint, used to pick a partition.
+     */
+    private static int partitionBits(ByteBuffer column, int offset) {
+        return (int) (Fingerprint.fingerprint64(column, offset) >>> 32);
+    }
+
+    private static final class ProbeMatches implements LongConsumer {
+        private final JoinSink sink;
+        long probeRow;
+
+        ProbeMatches(JoinSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept(long buildRow) {
+            sink.accept(probeRow, buildRow);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package be.heydari.adjenc.join;
+
+/**
+ * Receives the (leftRowId, rightRowId) pairs produced by a join.
+ * Parallel join operators call it from several threads at once.
+ *
+ * @author Emad Heydari Beni
+ */
+@FunctionalInterface
+public interface JoinSink {
+
+    void accept(long leftRowId, long rightRowId);
+}
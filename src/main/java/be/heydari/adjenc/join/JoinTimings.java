@@ -0,0 +1,47 @@
+package be.heydari.adjenc.join;
+
+/**
+ * Wall-clock time spent in each phase of a partitioned join.
+ *
+ * @author Emad Heydari Beni
+ */
+public class JoinTimings {
+
+    private final long adjustNanos;
+    private final long partitionNanos;
+    private final long buildNanos;
+    private final long probeNanos;
+
+    JoinTimings(long adjustNanos, long partitionNanos, long buildNanos, long probeNanos) {
+        this.adjustNanos = adjustNanos;
+        this.partitionNanos = partitionNanos;
+        this.buildNanos = buildNanos;
+        this.probeNanos = probeNanos;
+    }
+
+    public long getAdjustNanos() {
+        return adjustNanos;
+    }
+
+    public long getPartitionNanos() {
+        return partitionNanos;
+    }
+
+    public long getBuildNanos() {
+        return buildNanos;
+    }
+
+    public long getProbeNanos() {
+        return probeNanos;
+    }
+
+    public long getTotalNanos() {
+        return adjustNanos + partitionNanos + buildNanos + probeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("adjust %.3f ms, partition %.3f ms, build %.3f ms, probe %.3f ms",
+                adjustNanos / 1e6, partitionNanos / 1e6, buildNanos / 1e6, probeNanos / 1e6);
+    }
+}
@@ -0,0 +1,187 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import sun.misc.Unsafe;
+
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.function.LongConsumer;
+
+/**
+ * Open-addressing multimap from encoded points to long row ids, stored
+ * off-heap in direct ByteBuffers.
+ *
+ * Every slot holds the 33-byte encoded point inline followed by its row id,
+ * and a key that maps to several row ids simply occupies several slots.
+ * Collisions are resolved with linear probing. A slot is empty when its
+ * first byte is zero, which never is the prefix of a compressed point;
+ * put only accepts keys with a 0x02 or 0x03 prefix.
+ *
+ * The table has a fixed capacity of expectedEntries / LOAD_FACTOR slots,
+ * not rounded to a power of two; a hash is mapped to a slot with a
+ * multiply-shift, so memory use stays at about SLOT_SIZE / LOAD_FACTOR
+ * bytes per entry. It is not thread-safe for writes, but once built it can
+ * be probed from any number of threads.
+ *
+ * close() returns the direct memory right away by running the cleaners of
+ * the buffers; it must not overlap with puts or lookups, which fail once
+ * the table is closed. A table that is never closed is only freed after
+ * it becomes unreachable and is collected, and counts against
+ * -XX:MaxDirectMemorySize until then.
+ *
+ * @author Emad Heydari Beni
+ */
+public class OffHeapPointTable implements Closeable {
+
+    public static final int KEY_SIZE = AdjustableScheme.ENCODED_POINT_SIZE;
+    public static final int SLOT_SIZE = KEY_SIZE + Long.BYTES;
+    public static final double LOAD_FACTOR = 0.75;
+
+    private static final int SEGMENT_SHIFT = 25;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private static final Unsafe UNSAFE = unsafe();
+
+    private final ByteBuffer[] segments;
+    private final long capacity;
+    private long size;
+    private boolean closed;
+
+    public OffHeapPointTable(long expectedEntries) {
+        long slots = Math.max(2, (long) Math.ceil(expectedEntries / LOAD_FACTOR) + 1);
+        this.capacity = slots;
+        int segmentCount = (int) ((slots + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new ByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long segmentSlots = Math.min(slots - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT);
+            segments[i] = ByteBuffer.allocateDirect((int) (segmentSlots * SLOT_SIZE));
+        }
+    }
+
+    /**
+     * Adds the key found at the absolute offset of {@code src}.
+     */
+    public void put(ByteBuffer src, int offset, long rowId) {
+        ensureOpen();
+        byte prefix = src.get(offset);
+        if (prefix != 0x02 && prefix != 0x03) {
+            throw new IllegalArgumentException("key is not a compressed point encoding");
+        }
+        if (size >= capacity - 1) {
+            throw new IllegalStateException("table is full");
+        }
+        long slot = slot(hash(src, offset));
+        while (!isEmpty(slot)) {
+            slot = next(slot);
+        }
+        ByteBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+        int base = (int) (slot & SEGMENT_MASK) * SLOT_SIZE;
+        for (int i = 0; i < KEY_SIZE; i++) {
+            segment.put(base + i, src.get(offset + i));
+        }
+        segment.putLong(base + KEY_SIZE, rowId);
+        size++;
+    }
+
+    public void put(byte[] key, long rowId) {
+        put(ByteBuffer.wrap(key), 0, rowId);
+    }
+
+    /**
+     * Passes every row id stored under the key found at the absolute offset
+     * of {@code src} to the consumer and returns how many there were.
+     * Lookups do not allocate.
+     */
+    public int get(ByteBuffer src, int offset, LongConsumer rowIds) {
+        ensureOpen();
+        int matches = 0;
+        long slot = slot(hash(src, offset));
+        while (!isEmpty(slot)) {
+            ByteBuffer segment = segments[(int) (slot >>> SEGMENT_SHIFT)];
+            int base = (int) (slot & SEGMENT_MASK) * SLOT_SIZE;
+            if (Fingerprint.verify(segment, base, src, offset)) {
+                rowIds.accept(segment.getLong(base + KEY_SIZE));
+                matches++;
+            }
+            slot = next(slot);
+        }
+        return matches;
+    }
+
+    public int get(byte[] key, LongConsumer rowIds) {
+        return get(ByteBuffer.wrap(key), 0, rowIds);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Off-heap bytes held by this table.
+     */
+    public long footprint() {
+        return capacity * SLOT_SIZE;
+    }
+
+    /**
+     * Frees the off-heap memory of the table. Closing twice is a no-op.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < segments.length; i++) {
+            if (UNSAFE != null) {
+                UNSAFE.invokeCleaner(segments[i]);
+            }
+            segments[i] = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("table is closed");
+        }
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // without it, close() leaves the buffers to the garbage collector
+            return null;
+        }
+    }
+
+    private boolean isEmpty(long slot) {
+        return segments[(int) (slot >>> SEGMENT_SHIFT)].get((int) (slot & SEGMENT_MASK) * SLOT_SIZE) == 0;
+    }
+
+    /**
+     * Maps a 64-bit hash onto [0, capacity) as floor(hash * capacity / 2^64).
+     */
+    private long slot(long hash) {
+        return Math.multiplyHigh(hash >>> 1, capacity << 1);
+    }
+
+    private long next(long slot) {
+        return slot + 1 == capacity ? 0 : slot + 1;
+    }
+
+    /**
+     * Uses the half of the 128-bit fingerprint that HashJoin does not use
+     * for partitioning.
+     */
+    private static long hash(ByteBuffer src, int offset) {
+        return Fingerprint.fingerprint128Low(src, offset);
+    }
+}
@@ -0,0 +1,264 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.rekey.RekeyEngine;
+import be.heydari.adjenc.rekey.RekeyJob;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Radix-partitioned equi-join over two columns of encoded ciphertexts.
+ *
+ * After both columns are adjusted to a common key, every row is reduced to
+ * a 16-byte (fingerprint, row id) record and scattered into partitions on
+ * the top bits of its fingerprint, in one or two passes. The first pass
+ * runs over chunks of rows in parallel; the optional second pass splits
+ * every partition further, so that the fan-out of a single pass stays
+ * within what the caches and the TLB can hold. Each partition of the
+ * smaller side then gets its own small open-addressing table, and the
+ * partitions are built and probed independently on the executor. A
+ * fingerprint match is confirmed on the full encodings before it is passed
+ * to the sink.
+ *
+ * @author Emad Heydari Beni
+ */
+public class RadixJoin {
+
+    public static final int DEFAULT_FIRST_PASS_BITS = 7;
+    public static final int DEFAULT_SECOND_PASS_BITS = 5;
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 16;
+
+    private static final int WIDTH = AdjustableScheme.ENCODED_POINT_SIZE;
+
+    private final RekeyEngine rekeyEngine;
+    private final Executor executor;
+    private final int firstPassBits;
+    private final int secondPassBits;
+    private final int chunkRows;
+
+    public RadixJoin(AdjustableScheme scheme) {
+        this(scheme, ForkJoinPool.commonPool(), DEFAULT_FIRST_PASS_BITS, DEFAULT_SECOND_PASS_BITS, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * @param secondPassBits 0 for a single partitioning pass
+     */
+    public RadixJoin(AdjustableScheme scheme, Executor executor, int firstPassBits, int secondPassBits, int chunkRows) {
+        if (firstPassBits < 1 || secondPassBits < 0 || firstPassBits + secondPassBits > 24) {
+            throw new IllegalArgumentException("the first pass needs 1 to 24 radix bits, and both passes at most 24");
+        }
+        if (chunkRows <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.rekeyEngine = new RekeyEngine(scheme, executor,
+                RekeyEngine.DEFAULT_PARTITION_ROWS, RekeyEngine.DEFAULT_CHUNK_ROWS);
+        this.executor = executor;
+        this.firstPassBits = firstPassBits;
+        this.secondPassBits = secondPassBits;
+        this.chunkRows = chunkRows;
+    }
+
+    public JoinTimings join(ByteBuffer left, BigInteger leftDeltaToken,
+                            ByteBuffer right, BigInteger rightDeltaToken,
+                            JoinSink sink) throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        ByteBuffer adjustedLeft = allocateLike(left, leftDeltaToken);
+        ByteBuffer adjustedRight = allocateLike(right, rightDeltaToken);
+        RekeyJob leftJob = leftDeltaToken == null ? null : rekeyEngine.rekey(leftDeltaToken, left, adjustedLeft);
+        RekeyJob rightJob = rightDeltaToken == null ? null : rekeyEngine.rekey(rightDeltaToken, right, adjustedRight);
+        if (leftJob != null) {
+            leftJob.await();
+        }
+        if (rightJob != null) {
+            rightJob.await();
+        }
+
+        boolean buildLeft = adjustedLeft.remaining() <= adjustedRight.remaining();
+        ByteBuffer build = buildLeft ? adjustedLeft : adjustedRight;
+        ByteBuffer probe = buildLeft ? adjustedRight : adjustedLeft;
+        JoinSink matches = buildLeft ? sink : (buildRow, probeRow) -> sink.accept(probeRow, buildRow);
+
+        long adjusted = System.nanoTime();
+        long[][] buildPartitions = partition(build);
+        long[][] probePartitions = partition(probe);
+        long partitioned = System.nanoTime();
+        int[][] tables = build(buildPartitions);
+        long built = System.nanoTime();
+        probe(tables, buildPartitions, build, probePartitions, probe, matches);
+        long probed = System.nanoTime();
+        return new JoinTimings(adjusted - start, partitioned - adjusted, built - partitioned, probed - built);
+    }
+
+    private static ByteBuffer allocateLike(ByteBuffer column, BigInteger deltaToken) {
+        if (column.remaining() % WIDTH != 0) {
+            throw new IllegalArgumentException("column is not a multiple of " + WIDTH + " bytes");
+        }
+        return deltaToken == null ? column.duplicate() : ByteBuffer.allocate(column.remaining());
+    }
+
+    /**
+     * Returns the partitions of a column as interleaved (fingerprint, row id) pairs.
+     */
+    private long[][] partition(ByteBuffer column) throws InterruptedException, ExecutionException {
+        int rows = column.remaining() / WIDTH;
+        int base = column.position();
+        int fanOut = 1 << firstPassBits;
+        int shift = Long.SIZE - firstPassBits;
+        int chunks = (rows + chunkRows - 1) / chunkRows;
+
+        int[][] cursors = new int[chunks][fanOut];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[chunks];
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            tasks[c] = CompletableFuture.runAsync(() -> {
+                int last = Math.min(rows, (chunk + 1) * chunkRows);
+                for (int row = chunk * chunkRows; row < last; row++) {
+                    cursors[chunk][bucket(Fingerprint.fingerprint64(column, base + row * WIDTH), shift)]++;
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+
+        long[][] partitions = new long[fanOut][];
+        for (int p = 0; p < fanOut; p++) {
+            int size = 0;
+            for (int c = 0; c < chunks; c++) {
+                int count = cursors[c][p];
+                cursors[c][p] = size;
+                size += count;
+            }
+            partitions[p] = new long[2 * size];
+        }
+        for (int c = 0; c < chunks; c++) {
+            int chunk = c;
+            tasks[c] = CompletableFuture.runAsync(() -> {
+                int[] cursor = cursors[chunk];
+                int last = Math.min(rows, (chunk + 1) * chunkRows);
+                for (int row = chunk * chunkRows; row < last; row++) {
+                    long fingerprint = Fingerprint.fingerprint64(column, base + row * WIDTH);
+                    int p = bucket(fingerprint, shift);
+                    int i = cursor[p]++;
+                    partitions[p][2 * i] = fingerprint;
+                    partitions[p][2 * i + 1] = row;
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+
+        return secondPassBits == 0 ? partitions : refine(partitions);
+    }
+
+    /**
+     * Second pass: splits every partition on the next secondPassBits bits.
+     */
+    private long[][] refine(long[][] partitions) throws InterruptedException, ExecutionException {
+        int fanOut = 1 << secondPassBits;
+        int shift = Long.SIZE - firstPassBits - secondPassBits;
+        int mask = fanOut - 1;
+        long[][] refined = new long[partitions.length * fanOut][];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[partitions.length];
+        for (int p = 0; p < partitions.length; p++) {
+            long[] records = partitions[p];
+            int first = p * fanOut;
+            tasks[p] = CompletableFuture.runAsync(() -> {
+                int[] cursor = new int[fanOut];
+                for (int i = 0; i < records.length; i += 2) {
+                    cursor[bucket(records[i], shift) & mask]++;
+                }
+                for (int s = 0; s < fanOut; s++) {
+                    refined[first + s] = new long[2 * cursor[s]];
+                    cursor[s] = 0;
+                }
+                for (int i = 0; i < records.length; i += 2) {
+                    int s = bucket(records[i], shift) & mask;
+                    int j = 2 * cursor[s]++;
+                    refined[first + s][j] = records[i];
+                    refined[first + s][j + 1] = records[i + 1];
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+        return refined;
+    }
+
+    /**
+     * Builds one open-addressing table per partition. A slot holds the
+     * index of a record plus one, or 0 when it is empty.
+     */
+    private int[][] build(long[][] partitions) throws InterruptedException, ExecutionException {
+        int[][] tables = new int[partitions.length][];
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[partitions.length];
+        for (int p = 0; p < partitions.length; p++) {
+            int partition = p;
+            tasks[p] = CompletableFuture.runAsync(() -> {
+                long[] records = partitions[partition];
+                int size = records.length / 2;
+                int[] table = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size)) * 4)];
+                int mask = table.length - 1;
+                for (int i = 0; i < size; i++) {
+                    int slot = slot(records[2 * i], mask);
+                    while (table[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    table[slot] = i + 1;
+                }
+                tables[partition] = table;
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+        return tables;
+    }
+
+    /**
+     * Probes the tables; the sink receives (buildRowId, probeRowId).
+     */
+    private void probe(int[][] tables, long[][] buildPartitions, ByteBuffer build,
+                       long[][] probePartitions, ByteBuffer probe, JoinSink sink)
+            throws InterruptedException, ExecutionException {
+        int buildBase = build.position();
+        int probeBase = probe.position();
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[tables.length];
+        for (int p = 0; p < tables.length; p++) {
+            int partition = p;
+            tasks[p] = CompletableFuture.runAsync(() -> {
+                int[] table = tables[partition];
+                long[] buildRecords = buildPartitions[partition];
+                long[] probeRecords = probePartitions[partition];
+                int mask = table.length - 1;
+                for (int i = 0; i < probeRecords.length; i += 2) {
+                    long fingerprint = probeRecords[i];
+                    long probeRow = probeRecords[i + 1];
+                    int slot = slot(fingerprint, mask);
+                    while (table[slot] != 0) {
+                        int j = 2 * (table[slot] - 1);
+                        if (buildRecords[j] == fingerprint) {
+                            long buildRow = buildRecords[j + 1];
+                            if (Fingerprint.verify(build, buildBase + (int) buildRow * WIDTH,
+                                    probe, probeBase + (int) probeRow * WIDTH)) {
+                                sink.accept(buildRow, probeRow);
+                            }
+                        }
+                        slot = (slot + 1) & mask;
+                    }
+                }
+            }, executor);
+        }
+        CompletableFuture.allOf(tasks).get();
+    }
+
+    private static int bucket(long fingerprint, int shift) {
+        return (int) (fingerprint >>> shift);
+    }
+
+    /**
+     * The low bits of the fingerprint, which the radix passes do not use.
+     */
+    private static int slot(long fingerprint, int mask) {
+        return (int) fingerprint & mask;
+    }
+}
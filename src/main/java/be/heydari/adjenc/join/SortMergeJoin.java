@@ -0,0 +1,325 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.rekey.RekeyEngine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * External equi-join over two files of encoded ciphertexts, for columns
+ * that do not fit in memory.
+ *
+ * Each column is read in runs of at most runRows rows, adjusted to the
+ * common key with its delta token (null if it already is under that key),
+ * sorted and spilled to a temporary file as 33-byte keys followed by their
+ * row ids. The runs of each side are then merged with a k-way merge, and
+ * the two sorted streams are merge-joined; matches are passed to the sink
+ * as soon as they are found, on the calling thread. Row ids are the
+ * positions of the rows in their file.
+ *
+ * Memory use is about runRows * 80 bytes while sorting, and one I/O buffer
+ * per run while merging.
+ *
+ * @author Emad Heydari Beni
+ */
+public class SortMergeJoin {
+
+    public static final int DEFAULT_RUN_ROWS = 1 << 20;
+    public static final int DEFAULT_IO_BUFFER_SIZE = 1 << 20;
+    public static final int MAX_RUN_ROWS = 1 << 24;
+
+    private static final int KEY_SIZE = AdjustableScheme.ENCODED_POINT_SIZE;
+    private static final int RECORD_SIZE = KEY_SIZE + Long.BYTES;
+    private static final long ROW_MASK = MAX_RUN_ROWS - 1;
+
+    private final RekeyEngine rekeyEngine;
+    private final int runRows;
+    private final Path tempDirectory;
+    private final int ioBufferSize;
+
+    public SortMergeJoin(AdjustableScheme scheme) {
+        this(scheme, DEFAULT_RUN_ROWS, Paths.get(System.getProperty("java.io.tmpdir")), DEFAULT_IO_BUFFER_SIZE);
+    }
+
+    public SortMergeJoin(AdjustableScheme scheme, int runRows, Path tempDirectory, int ioBufferSize) {
+        if (runRows <= 0 || runRows > MAX_RUN_ROWS) {
+            throw new IllegalArgumentException("run size must be between 1 and " + MAX_RUN_ROWS + " rows");
+        }
+        if (ioBufferSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("I/O buffers must hold at least one " + RECORD_SIZE + "-byte record");
+        }
+        this.rekeyEngine = new RekeyEngine(scheme);
+        this.runRows = runRows;
+        this.tempDirectory = tempDirectory;
+        this.ioBufferSize = ioBufferSize - ioBufferSize % RECORD_SIZE;
+    }
+
+    public void join(Path left, BigInteger leftDeltaToken,
+                     Path right, BigInteger rightDeltaToken,
+                     JoinSink sink) throws IOException, InterruptedException, ExecutionException {
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            List<Path> leftRuns = sortRuns(left, leftDeltaToken, tempFiles);
+            List<Path> rightRuns = sortRuns(right, rightDeltaToken, tempFiles);
+            try (RunMerger leftRows = new RunMerger(leftRuns, ioBufferSize);
+                 RunMerger rightRows = new RunMerger(rightRuns, ioBufferSize)) {
+                mergeJoin(leftRows, rightRows, sink);
+            }
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    private List<Path> sortRuns(Path column, BigInteger deltaToken, List<Path> tempFiles)
+            throws IOException, InterruptedException, ExecutionException {
+        List<Path> runs = new ArrayList<>();
+        ByteBuffer in = ByteBuffer.allocateDirect(runRows * KEY_SIZE);
+        ByteBuffer keys = deltaToken == null ? in : ByteBuffer.allocateDirect(runRows * KEY_SIZE);
+        ByteBuffer out = ByteBuffer.allocateDirect(ioBufferSize);
+        long[] order = new long[runRows];
+        long firstRow = 0;
+        try (FileChannel channel = FileChannel.open(column, StandardOpenOption.READ)) {
+            if (channel.size() % KEY_SIZE != 0) {
+                throw new IllegalArgumentException("column is not a multiple of " + KEY_SIZE + " bytes");
+            }
+            while (true) {
+                in.clear();
+                while (in.hasRemaining() && channel.read(in) >= 0) {
+                }
+                in.flip();
+                if (!in.hasRemaining()) {
+                    break;
+                }
+                int rows = in.remaining() / KEY_SIZE;
+                if (deltaToken != null) {
+                    keys.clear();
+                    rekeyEngine.rekey(deltaToken, in, keys).await();
+                }
+                sort(keys, rows, order);
+
+                Path run = Files.createTempFile(tempDirectory, "sort-merge-", ".run");
+                tempFiles.add(run);
+                runs.add(run);
+                try (FileChannel runChannel = FileChannel.open(run, StandardOpenOption.WRITE)) {
+                    out.clear();
+                    for (int i = 0; i < rows; i++) {
+                        int row = (int) (order[i] & ROW_MASK);
+                        if (out.remaining() < RECORD_SIZE) {
+                            flush(out, runChannel);
+                        }
+                        for (int b = 0; b < KEY_SIZE; b++) {
+                            out.put(keys.get(row * KEY_SIZE + b));
+                        }
+                        out.putLong(firstRow + row);
+                    }
+                    flush(out, runChannel);
+                }
+                firstRow += rows;
+            }
+        }
+        return runs;
+    }
+
+    /**
+     * Orders the rows of a run by compare. The sort keys are the top 40 bits
+     * of the fingerprint with the row in the low bits; rows that share
+     * those 40 bits are then ordered on their full keys.
+     */
+    private static void sort(ByteBuffer keys, int rows, long[] order) {
+        for (int row = 0; row < rows; row++) {
+            long fingerprint = Fingerprint.fingerprint64(keys, row * KEY_SIZE);
+            // flip the sign bit so that signed order is unsigned fingerprint order
+            order[row] = ((fingerprint & ~ROW_MASK) | row) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(order, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            order[i] ^= Long.MIN_VALUE;
+        }
+        int first = 0;
+        for (int i = 1; i <= rows; i++) {
+            if (i == rows || (order[i] & ~ROW_MASK) != (order[first] & ~ROW_MASK)) {
+                for (int j = first + 1; j < i; j++) {
+                    long v = order[j];
+                    int k = j - 1;
+                    while (k >= first && compare(keys, rowOffset(order[k]), keys, rowOffset(v)) > 0) {
+                        order[k + 1] = order[k];
+                        k--;
+                    }
+                    order[k + 1] = v;
+                }
+                first = i;
+            }
+        }
+    }
+
+    private static int rowOffset(long sortKey) {
+        return (int) (sortKey & ROW_MASK) * KEY_SIZE;
+    }
+
+    private static void flush(ByteBuffer out, FileChannel channel) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    private static void mergeJoin(RunMerger left, RunMerger right, JoinSink sink) throws IOException {
+        byte[] key = new byte[KEY_SIZE];
+        ByteBuffer keyBuffer = ByteBuffer.wrap(key);
+        long[] group = new long[16];
+        boolean hasLeft = left.next();
+        boolean hasRight = right.next();
+        while (hasLeft && hasRight) {
+            int c = compare(left.buffer(), left.offset(), right.buffer(), right.offset());
+            if (c < 0) {
+                hasLeft = left.next();
+            } else if (c > 0) {
+                hasRight = right.next();
+            } else {
+                for (int i = 0; i < KEY_SIZE; i++) {
+                    key[i] = left.buffer().get(left.offset() + i);
+                }
+                int size = 0;
+                do {
+                    if (size == group.length) {
+                        group = Arrays.copyOf(group, size * 2);
+                    }
+                    group[size++] = left.rowId();
+                    hasLeft = left.next();
+                } while (hasLeft && Fingerprint.verify(keyBuffer, 0, left.buffer(), left.offset()));
+                do {
+                    long rightRowId = right.rowId();
+                    for (int i = 0; i < size; i++) {
+                        sink.accept(group[i], rightRowId);
+                    }
+                    hasRight = right.next();
+                } while (hasRight && Fingerprint.verify(keyBuffer, 0, right.buffer(), right.offset()));
+            }
+        }
+    }
+
+    /**
+     * Total order on encoded points, consistent with the unsigned order of
+     * their fingerprints: x first, then the prefix byte.
+     */
+    private static int compare(ByteBuffer a, int aOffset, ByteBuffer b, int bOffset) {
+        for (int i = 1; i < KEY_SIZE; i += Long.BYTES) {
+            int c = Long.compareUnsigned(a.getLong(aOffset + i), b.getLong(bOffset + i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.get(aOffset) & 0xff, b.get(bOffset) & 0xff);
+    }
+
+    /**
+     * Sequential reader of a sorted run; the current record starts at offset().
+     */
+    private static final class RunReader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private boolean started;
+
+        RunReader(Path run, int bufferSize) throws IOException {
+            this.channel = FileChannel.open(run, StandardOpenOption.READ);
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+            this.buffer.limit(0);
+        }
+
+        boolean next() throws IOException {
+            if (started) {
+                buffer.position(buffer.position() + RECORD_SIZE);
+            }
+            started = true;
+            if (buffer.remaining() < RECORD_SIZE) {
+                buffer.compact();
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                }
+                buffer.flip();
+            }
+            return buffer.remaining() >= RECORD_SIZE;
+        }
+
+        int offset() {
+            return buffer.position();
+        }
+
+        long rowId() {
+            return buffer.getLong(buffer.position() + KEY_SIZE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * k-way merge of the sorted runs of one side.
+     */
+    private static final class RunMerger implements Closeable {
+        private final List<RunReader> readers = new ArrayList<>();
+        private final PriorityQueue<RunReader> heap;
+        private RunReader current;
+
+        RunMerger(List<Path> runs, int bufferSize) throws IOException {
+            this.heap = new PriorityQueue<>(Math.max(1, runs.size()),
+                    (a, b) -> compare(a.buffer, a.offset(), b.buffer, b.offset()));
+            try {
+                for (Path run : runs) {
+                    RunReader reader = new RunReader(run, bufferSize);
+                    readers.add(reader);
+                    if (reader.next()) {
+                        heap.add(reader);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        boolean next() throws IOException {
+            if (current != null && current.next()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            return current != null;
+        }
+
+        ByteBuffer buffer() {
+            return current.buffer;
+        }
+
+        int offset() {
+            return current.offset();
+        }
+
+        long rowId() {
+            return current.rowId();
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+}
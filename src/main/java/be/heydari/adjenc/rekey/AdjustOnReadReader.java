@@ -0,0 +1,114 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads epoch-tagged ciphertexts and adjusts them to the current key of
+ * their column when they are read, so that a key rotation only has to be
+ * recorded in the KeyEpochRegistry instead of rewriting the column.
+ *
+ * A tagged ciphertext is the 4-byte big-endian epoch of its key followed by
+ * the 33-byte encoding of encodeEcPoint. Stale values are adjusted with the
+ * registry's cached composed token, and optionally written back so that the
+ * next read is free. Write-back is not atomic: a buffer that is written
+ * back to must not be read by other threads at the same time.
+ *
+ * @author Emad Heydari Beni
+ */
+public class AdjustOnReadReader {
+
+    public static final int EPOCH_SIZE = Integer.BYTES;
+    public static final int TAGGED_POINT_SIZE = EPOCH_SIZE + AdjustableScheme.ENCODED_POINT_SIZE;
+
+    private final KeyEpochRegistry registry;
+    private final String column;
+    private final boolean writeBack;
+
+    public AdjustOnReadReader(KeyEpochRegistry registry, String column, boolean writeBack) {
+        this.registry = registry;
+        this.column = column;
+        this.writeBack = writeBack;
+    }
+
+    public static byte[] tag(int epoch, byte[] encodedCiphertext) {
+        if (encodedCiphertext.length != AdjustableScheme.ENCODED_POINT_SIZE) {
+            throw new IllegalArgumentException("Invalid point encoding");
+        }
+        return ByteBuffer.allocate(TAGGED_POINT_SIZE).putInt(epoch).put(encodedCiphertext).array();
+    }
+
+    public static int epoch(byte[] tagged) {
+        return ByteBuffer.wrap(tagged).getInt(0);
+    }
+
+    /**
+     * Returns the ciphertext under the current key of the column. If
+     * write-back is enabled, a stale {@code tagged} is upgraded in place.
+     */
+    public byte[] read(byte[] tagged) {
+        if (tagged.length != TAGGED_POINT_SIZE) {
+            throw new IllegalArgumentException("tagged ciphertext must be " + TAGGED_POINT_SIZE + " bytes");
+        }
+        return read(ByteBuffer.wrap(tagged), 0, registry.currentEpoch(column));
+    }
+
+    /**
+     * Reads the tagged ciphertext of the given row of a column buffer,
+     * counted from the buffer's position.
+     */
+    public byte[] read(ByteBuffer taggedColumn, int row) {
+        return read(taggedColumn, taggedColumn.position() + row * TAGGED_POINT_SIZE, registry.currentEpoch(column));
+    }
+
+    /**
+     * Writes every row between position and limit of {@code in} to
+     * {@code out} as untagged ciphertexts under the current key, e.g. as
+     * input of a join. Neither buffer's position is modified.
+     */
+    public void readAll(ByteBuffer in, ByteBuffer out) {
+        if (in.remaining() % TAGGED_POINT_SIZE != 0) {
+            throw new IllegalArgumentException("input is not a multiple of " + TAGGED_POINT_SIZE + " bytes");
+        }
+        int rows = in.remaining() / TAGGED_POINT_SIZE;
+        if (out.remaining() < rows * AdjustableScheme.ENCODED_POINT_SIZE) {
+            throw new IllegalArgumentException("output buffer is too small");
+        }
+        int currentEpoch = registry.currentEpoch(column);
+        for (int row = 0; row < rows; row++) {
+            byte[] ciphertext = read(in, in.position() + row * TAGGED_POINT_SIZE, currentEpoch);
+            int offset = out.position() + row * AdjustableScheme.ENCODED_POINT_SIZE;
+            for (int i = 0; i < ciphertext.length; i++) {
+                out.put(offset + i, ciphertext[i]);
+            }
+        }
+    }
+
+    private byte[] read(ByteBuffer buffer, int offset, int currentEpoch) {
+        int epoch = buffer.getInt(offset);
+        byte[] ciphertext = new byte[AdjustableScheme.ENCODED_POINT_SIZE];
+        for (int i = 0; i < ciphertext.length; i++) {
+            ciphertext[i] = buffer.get(offset + EPOCH_SIZE + i);
+        }
+        if (epoch == currentEpoch) {
+            return ciphertext;
+        }
+        if (epoch > currentEpoch) {
+            throw new IllegalArgumentException("ciphertext is tagged with epoch " + epoch
+                    + ", but column " + column + " is only at epoch " + currentEpoch);
+        }
+        // compose against the epoch read once per call, so the stored tag
+        // always matches the key the value was adjusted to
+        PreparedScalar token = registry.compose(column, epoch, currentEpoch);
+        byte[] adjusted = registry.scheme().adjustBytes(token, ciphertext);
+        if (writeBack && !buffer.isReadOnly()) {
+            for (int i = 0; i < adjusted.length; i++) {
+                buffer.put(offset + EPOCH_SIZE + i, adjusted[i]);
+            }
+            buffer.putInt(offset, currentEpoch);
+        }
+        return adjusted;
+    }
+}
@@ -0,0 +1,158 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tracks the key epochs of columns. Epoch 0 is the key a column was
+ * registered with, and every rotation appends the delta token from the
+ * previous epoch to the new one.
+ *
+ * A ciphertext written at any past epoch catches up to the current key
+ * with one multiplication: the deltas in between are composed modulo n,
+ * and the composed token is cached, already prepared.
+ *
+ * @author Emad Heydari Beni
+ */
+public class KeyEpochRegistry {
+
+    public static final long DEFAULT_MAXIMUM_COMPOSED = 1 << 12;
+
+    private final AdjustableScheme scheme;
+    private final ConcurrentMap<String, List<BigInteger>> deltas = new ConcurrentHashMap<>();
+    private final Cache<Span, PreparedScalar> composed;
+
+    public KeyEpochRegistry(AdjustableScheme scheme) {
+        this(scheme, DEFAULT_MAXIMUM_COMPOSED);
+    }
+
+    public KeyEpochRegistry(AdjustableScheme scheme, long maximumComposed) {
+        this.scheme = scheme;
+        this.composed = CacheBuilder.newBuilder()
+                .maximumSize(maximumComposed)
+                .build();
+    }
+
+    /**
+     * Starts tracking a column at epoch 0.
+     */
+    public void register(String column) {
+        if (deltas.putIfAbsent(column, new ArrayList<>()) != null) {
+            throw new IllegalArgumentException("column " + column + " is already registered");
+        }
+    }
+
+    /**
+     * Records a rotation of the column and returns its new epoch.
+     */
+    public int rotate(String column, BigInteger deltaToken) {
+        List<BigInteger> history = history(column);
+        synchronized (history) {
+            history.add(deltaToken);
+            return history.size();
+        }
+    }
+
+    public int currentEpoch(String column) {
+        List<BigInteger> history = history(column);
+        synchronized (history) {
+            return history.size();
+        }
+    }
+
+    /**
+     * The delta token of the rotation that led to the given epoch.
+     */
+    public BigInteger deltaToken(String column, int epoch) {
+        List<BigInteger> history = history(column);
+        synchronized (history) {
+            if (epoch < 1 || epoch > history.size()) {
+                throw new IllegalArgumentException("no rotation led to epoch " + epoch + " of column " + column);
+            }
+            return history.get(epoch - 1);
+        }
+    }
+
+    /**
+     * The single token that adjusts a ciphertext from one epoch to a later one.
+     */
+    public PreparedScalar compose(String column, int fromEpoch, int toEpoch) {
+        List<BigInteger> history = history(column);
+        BigInteger[] chain;
+        synchronized (history) {
+            if (fromEpoch < 0 || fromEpoch > toEpoch || toEpoch > history.size()) {
+                throw new IllegalArgumentException("invalid epochs " + fromEpoch + " to " + toEpoch
+                        + " of column " + column);
+            }
+            chain = history.subList(fromEpoch, toEpoch).toArray(new BigInteger[0]);
+        }
+        try {
+            return composed.get(new Span(column, fromEpoch, toEpoch),
+                    () -> scheme.prepare(scheme.composeDeltaTokens(chain)));
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The token that brings a ciphertext of the given epoch to the current key.
+     */
+    public PreparedScalar catchUpToken(String column, int epoch) {
+        return compose(column, epoch, currentEpoch(column));
+    }
+
+    /**
+     * Adjusts an encoded ciphertext written at the given epoch to the current key.
+     */
+    public byte[] catchUp(String column, int epoch, byte[] encodedCiphertext) {
+        return scheme.adjustBytes(catchUpToken(column, epoch), encodedCiphertext);
+    }
+
+    AdjustableScheme scheme() {
+        return scheme;
+    }
+
+    private List<BigInteger> history(String column) {
+        List<BigInteger> history = deltas.get(column);
+        if (history == null) {
+            throw new IllegalArgumentException("column " + column + " is not registered");
+        }
+        return history;
+    }
+
+    private static final class Span {
+        private final String column;
+        private final int fromEpoch;
+        private final int toEpoch;
+
+        Span(String column, int fromEpoch, int toEpoch) {
+            this.column = column;
+            this.fromEpoch = fromEpoch;
+            this.toEpoch = toEpoch;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Span)) {
+                return false;
+            }
+            Span other = (Span) o;
+            return fromEpoch == other.fromEpoch && toEpoch == other.toEpoch && column.equals(other.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(column, fromEpoch, toEpoch);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.buildingblocks.RecodedScalar;
+import org.bouncycastle.math.ec.ECPoint;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Re-keys a column of fixed-width encoded ciphertexts (the output of
+ * encodeEcPoint) in parallel. The column is split into partitions that are
+ * adjusted independently; within a partition, rows are processed in chunks
+ * that share a single normalization.
+ *
+ * @author Emad Heydari Beni
+ */
+public class RekeyEngine {
+
+    public static final int DEFAULT_PARTITION_ROWS = 1 << 16;
+    public static final int DEFAULT_CHUNK_ROWS = 1 << 10;
+
+    private final AdjustableScheme scheme;
+    private final Executor executor;
+    private final int partitionRows;
+    private final int chunkRows;
+
+    public RekeyEngine(AdjustableScheme scheme) {
+        this(scheme, ForkJoinPool.commonPool(), DEFAULT_PARTITION_ROWS, DEFAULT_CHUNK_ROWS);
+    }
+
+    public RekeyEngine(AdjustableScheme scheme, Executor executor, int partitionRows, int chunkRows) {
+        if (partitionRows <= 0 || chunkRows <= 0) {
+            throw new IllegalArgumentException("partition and chunk sizes must be positive");
+        }
+        this.scheme = scheme;
+        this.executor = executor;
+        this.partitionRows = partitionRows;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * Starts adjusting the encoded points between position and limit of
+     * {@code in} and writes the adjusted points to {@code out}, starting at
+     * its position. Neither buffer's position is modified.
+     */
+    public RekeyJob rekey(BigInteger deltaToken, ByteBuffer in, ByteBuffer out) {
+        int width = AdjustableScheme.ENCODED_POINT_SIZE;
+        if (in.remaining() % width != 0) {
+            throw new IllegalArgumentException("input is not a multiple of " + width + " bytes");
+        }
+        if (out.remaining() < in.remaining()) {
+            throw new IllegalArgumentException("output buffer is too small");
+        }
+        int rows = in.remaining() / width;
+        int partitions = (rows + partitionRows - 1) / partitionRows;
+        long[] sizes = new long[partitions];
+        for (int p = 0; p < partitions; p++) {
+            sizes[p] = Math.min(partitionRows, rows - p * partitionRows);
+        }
+
+        RecodedScalar delta = scheme.recodeDeltaToken(deltaToken);
+        RekeyJob job = new RekeyJob(sizes);
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[partitions];
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            int firstRow = p * partitionRows;
+            tasks[p] = CompletableFuture.runAsync(
+                    () -> rekeyPartition(delta, in, out, firstRow, (int) sizes[partition], partition, job),
+                    executor);
+        }
+        job.start(CompletableFuture.allOf(tasks));
+        return job;
+    }
+
+    private void rekeyPartition(RecodedScalar delta, ByteBuffer in, ByteBuffer out,
+                                int firstRow, int rows, int partition, RekeyJob job) {
+        int width = AdjustableScheme.ENCODED_POINT_SIZE;
+        ByteBuffer src = in.duplicate();
+        ByteBuffer dst = out.duplicate();
+        src.position(in.position() + firstRow * width);
+        dst.position(out.position() + firstRow * width);
+
+        byte[] encoded = new byte[width];
+        ECPoint[] chunk = new ECPoint[Math.min(chunkRows, rows)];
+        for (int done = 0; done < rows; ) {
+            int n = Math.min(chunk.length, rows - done);
+            for (int i = 0; i < n; i++) {
+                src.get(encoded);
+                chunk[i] = scheme.decodeEcPoint(encoded);
+            }
+            ECPoint[] adjusted = scheme.adjustAll(delta, n == chunk.length ? chunk : Arrays.copyOf(chunk, n));
+            for (int i = 0; i < n; i++) {
+                dst.put(scheme.encodeEcPoint(adjusted[i]));
+            }
+            done += n;
+            job.addRowsDone(partition, n);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package be.heydari.adjenc.rekey;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Handle on a running re-keying job. Progress is tracked per partition
+ * and can be polled from any thread while the job is running.
+ *
+ * @author Emad Heydari Beni
+ */
+public class RekeyJob {
+
+    private final long[] partitionRows;
+    private final AtomicLongArray partitionRowsDone;
+    private final long totalRows;
+    private final long startNanos;
+    private volatile long endNanos;
+    private CompletableFuture<Void> completion;
+
+    RekeyJob(long[] partitionRows) {
+        this.partitionRows = partitionRows;
+        this.partitionRowsDone = new AtomicLongArray(partitionRows.length);
+        long total = 0;
+        for (long rows : partitionRows) {
+            total += rows;
+        }
+        this.totalRows = total;
+        this.startNanos = System.nanoTime();
+    }
+
+    void start(CompletableFuture<Void> completion) {
+        this.completion = completion.whenComplete((v, t) -> endNanos = System.nanoTime());
+    }
+
+    void addRowsDone(int partition, long rows) {
+        partitionRowsDone.addAndGet(partition, rows);
+    }
+
+    public int getPartitionCount() {
+        return partitionRows.length;
+    }
+
+    public long getPartitionRows(int partition) {
+        return partitionRows[partition];
+    }
+
+    public long getPartitionRowsDone(int partition) {
+        return partitionRowsDone.get(partition);
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public long getRowsDone() {
+        long done = 0;
+        for (int i = 0; i < partitionRows.length; i++) {
+            done += partitionRowsDone.get(i);
+        }
+        return done;
+    }
+
+    /**
+     * Throughput since the job started, or over the whole job once it is done.
+     */
+    public double getRowsPerSecond() {
+        long end = isDone() ? endNanos : System.nanoTime();
+        long elapsed = Math.max(1, end - startNanos);
+        return getRowsDone() * 1e9 / elapsed;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    public void await() throws InterruptedException, ExecutionException {
+        completion.get();
+    }
+}
@@ -24,13 +24,14 @@ public class CONFIG_FIELD {
     public static final int PSEUDO_MERSENNE = 1;
     public static final int MONTGOMERY_FRIENDLY = 2;
     public static final int GENERALISED_MERSENNE = 3;
+    public static final int WIDE_PSEUDO_MERSENNE = 4; /* 2^MODBITS-c with c=ROM.PMConst wider than an int, e.g. secp256k1 */
 
     public static final int NEGATOWER = 0;
     public static final int POSITOWER = 1;
 
     public static final int MODBITS = 256; /* Number of bits in Modulus */
     public static final int PM1D2 = 1; /* Modulus mod 8 */
-    public static final int MODTYPE = NOT_SPECIAL;
+    public static final int MODTYPE = WIDE_PSEUDO_MERSENNE; /* NOT_SPECIAL selects Montgomery reduction */
     public static final int QNRI = 0;
     public static final int RIADZ = 1;
     public static final int RIADZG2A = 0;
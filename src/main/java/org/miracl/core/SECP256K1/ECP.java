@@ -267,6 +267,34 @@ public final class ECP {
 		}
 		z.copy(one);
 	}
+/* set all points to affine, sharing one field inversion (Montgomery's trick). Points at infinity are left as they are */
+	public static void affineAll(ECP[] P) {
+		int n=P.length;
+		if (n==0) return;
+		FP one=new FP(1);
+		FP[] acc=new FP[n];
+		FP t=new FP(1);
+		for (int i=0;i<n;i++)
+		{
+			acc[i]=new FP(t);
+			if (!P[i].is_infinity()) t.mul(P[i].z);
+		}
+		t.inverse();
+		for (int i=n-1;i>=0;i--)
+		{
+			if (P[i].is_infinity()) continue;
+			FP zi=new FP(t);
+			zi.mul(acc[i]);
+			t.mul(P[i].z);
+			P[i].x.mul(zi); P[i].x.reduce();
+			if (CONFIG_CURVE.CURVETYPE!=CONFIG_CURVE.MONTGOMERY)
+			{
+				P[i].y.mul(zi); P[i].y.reduce();
+			}
+			P[i].z.copy(one);
+		}
+	}
+
 /* extract x as a BIG */
 	public BIG getX()
 	{
@@ -820,6 +848,10 @@ public final class ECP {
 
 			P.copy(R0);
 		}
+		else if (CONFIG_CURVE.USE_GLV)
+		{
+			P=glvmul(e);
+		}
 		else
 		{
 // fixed size windows
@@ -880,51 +912,112 @@ public final class ECP {
 		return P;
 	}
 
+/* GLV method - split e into k1+k2.lambda with |k1|,|k2| < 2^129 and return k1.this+k2.phi(this) */
+	private static final int GLV_BITS=130;
+
+	private ECP glvmul(BIG e) {
+		return glvmul(glvrecode(e));
+	}
+
+/* Recode e once for repeated use with glvmul(byte[]), for curves with USE_GLV.
+   Holds the signs of the GLV split and the joint signed 2-bit windows of mul2 */
+	public static byte[] glvrecode(BIG e) {
+		BIG k=new BIG(e);
+		k.mod(new BIG(ROM.CURVE_Order));
+		BIG a1=new BIG(ROM.CURVE_GLV_A1);
+		BIG c1=glvround(k,new BIG(ROM.CURVE_GLV_G1));
+		BIG c2=glvround(k,new BIG(ROM.CURVE_GLV_G2));
+
+		BIG k1=new BIG(k);
+		k1.sub(BIG.smul(c1,a1));
+		k1.sub(BIG.smul(c2,new BIG(ROM.CURVE_GLV_A2)));
+		k1.norm();
+		BIG k2=BIG.smul(c1,new BIG(ROM.CURVE_GLV_B1));
+		k2.sub(BIG.smul(c2,a1));
+		k2.norm();
+
+		int s1=glvabs(k1);
+		int s2=glvabs(k2);
+		byte[] r=recode2(k1,k2,GLV_BITS);
+		r[0]|=(byte)((s1<<2)|(s2<<3));
+		return r;
+	}
+
+/* return e.this, where r=glvrecode(e). Constant time */
+	public ECP glvmul(byte[] r) {
+		ECP P=new ECP(this);
+		ECP Q=new ECP(this);
+		Q.x.mul(new FP(new BIG(ROM.CURVE_Cru)));
+		P.cneg((r[0]>>2)&1);
+		Q.cneg((r[0]>>3)&1);
+		return P.mul2(Q,r);
+	}
+
+/* round(k.g/2^384) */
+	private static BIG glvround(BIG k,BIG g) {
+		DBIG d=BIG.mul(k,g);
+		d.shr(383);
+		BIG c=new BIG(d);
+		c.inc(1); c.norm();
+		c.fshr(1);
+		return c;
+	}
+
+/* replace k by |k|, return 1 if k was negative */
+	private static int glvabs(BIG k) {
+		int s=(int)(k.w[BIG.NLEN-1]>>>(BIG.CHUNK-1));
+		BIG nk=new BIG(0);
+		nk.sub(k); nk.norm();
+		k.cmove(nk,s);
+		return s;
+	}
+
+/* this=-this if d=1, in constant time */
+	private void cneg(int d) {
+		ECP N=new ECP(this);
+		N.neg();
+		cmove(N,d);
+	}
+
 /* Return e.this+f.Q */
 
 	public ECP mul2(BIG e,ECP Q,BIG f) {
+		return mul2(Q,recode2(e,f,0));
+	}
+
+/* Recode e and f for mul2 as r[0] = corrections, r[1..nb+1] = joint signed 2-bit windows.
+   bts>0 fixes the number of multiplier bits processed so that timing does not depend on e and f */
+	private static byte[] recode2(BIG e,BIG f,int bts) {
 		BIG te=new BIG();
 		BIG tf=new BIG();
 		BIG mt=new BIG();
-		ECP S=new ECP();
-		ECP T=new ECP();
-		ECP C=new ECP();
-		ECP[] W=new ECP[8];
-		byte[] w=new byte[1+(BIG.NLEN*CONFIG_BIG.BASEBITS+1)/2];
-		int i,s,ns,nb;
+		int i,s,ns,nb,c;
 		byte a,b;
 
 		te.copy(e);
 		tf.copy(f);
 
-// precompute table
-		W[1]=new ECP(); W[1].copy(this); W[1].sub(Q);
-		W[2]=new ECP(); W[2].copy(this); W[2].add(Q);
-		S.copy(Q); S.dbl();
-		W[0]=new ECP(); W[0].copy(W[1]); W[0].sub(S);
-		W[3]=new ECP(); W[3].copy(W[2]); W[3].add(S);
-		T.copy(this); T.dbl();
-		W[5]=new ECP(); W[5].copy(W[1]); W[5].add(T);
-		W[6]=new ECP(); W[6].copy(W[2]); W[6].add(T);
-		W[4]=new ECP(); W[4].copy(W[5]); W[4].sub(S);
-		W[7]=new ECP(); W[7].copy(W[6]); W[7].add(S);
-
 // if multiplier is odd, add 2, else add 1 to multiplier, and add 2P or P to correction
 
 		s=te.parity();
 		te.inc(1); te.norm(); ns=te.parity(); mt.copy(te); mt.inc(1); mt.norm();
 		te.cmove(mt,s);
-		T.cmove(this,ns);
-		C.copy(T);
+		c=ns;
 
 		s=tf.parity();
 		tf.inc(1); tf.norm(); ns=tf.parity(); mt.copy(tf); mt.inc(1); mt.norm();
 		tf.cmove(mt,s);
-		S.cmove(Q,ns);
-		C.add(S);
+		c|=ns<<1;
 
-		mt.copy(te); mt.add(tf); mt.norm();
-		nb=1+(mt.nbits()+1)/2;
+		if (bts>0)
+			nb=1+(bts+1)/2;
+		else
+		{
+			mt.copy(te); mt.add(tf); mt.norm();
+			nb=1+(mt.nbits()+1)/2;
+		}
+		byte[] r=new byte[nb+2];
+		r[0]=(byte)c;
 
 // convert exponent to signed 2-bit window
 		for (i=0;i<nb;i++)
@@ -935,14 +1028,56 @@ public final class ECP {
 			b=(byte)(tf.lastbits(3)-4);
 			tf.dec(b); tf.norm();
 			tf.fshr(2);
-			w[i]=(byte)(4*a+b);
+			r[i+1]=(byte)(4*a+b);
 		}
-		w[nb]=(byte)(4*te.lastbits(3)+tf.lastbits(3));
-		S.copy(W[(w[nb]-1)/2]);
+		r[nb+1]=(byte)(4*te.lastbits(3)+tf.lastbits(3));
+		return r;
+	}
+
+/* Return e.this+f.Q for r=recode2(e,f) */
+	private ECP mul2(ECP Q,byte[] r) {
+		return eval2(table2(this,Q),r);
+	}
+
+/* Joint table of P and Q for eval2: W[0..7] = P-3Q,P-Q,P+Q,P+3Q,3P-3Q,3P-Q,3P+Q,3P+3Q, then P,2P,Q,2Q */
+	private static ECP[] table2(ECP P,ECP Q) {
+		ECP[] W=new ECP[12];
+		ECP S=new ECP(Q); S.dbl();
+		ECP T=new ECP(P); T.dbl();
+
+// precompute table
+		W[1]=new ECP(); W[1].copy(P); W[1].sub(Q);
+		W[2]=new ECP(); W[2].copy(P); W[2].add(Q);
+		W[0]=new ECP(); W[0].copy(W[1]); W[0].sub(S);
+		W[3]=new ECP(); W[3].copy(W[2]); W[3].add(S);
+		W[5]=new ECP(); W[5].copy(W[1]); W[5].add(T);
+		W[6]=new ECP(); W[6].copy(W[2]); W[6].add(T);
+		W[4]=new ECP(); W[4].copy(W[5]); W[4].sub(S);
+		W[7]=new ECP(); W[7].copy(W[6]); W[7].add(S);
+		W[8]=new ECP(P); W[9]=T;
+		W[10]=new ECP(Q); W[11]=S;
+		return W;
+	}
+
+/* Return e.P+f.Q for W=table2(P,Q) and r=recode2(e,f). W is not modified */
+	private static ECP eval2(ECP[] W,byte[] r) {
+		ECP S=new ECP();
+		ECP T=new ECP();
+		ECP C=new ECP();
+		int i,nb=r.length-2;
+
+// correction is 2P or P, plus 2Q or Q
+		C.copy(W[9]);
+		C.cmove(W[8],r[0]&1);
+		T.copy(W[11]);
+		T.cmove(W[10],(r[0]>>1)&1);
+		C.add(T);
+
+		S.copy(W[(r[nb+1]-1)/2]);
 
 		for (i=nb-1;i>=0;i--)
 		{
-			T.select(W,w[i]);
+			T.select(W,r[i+1]);
 			S.dbl();
 			S.dbl();
 			S.add(T);
@@ -952,6 +1087,32 @@ public final class ECP {
 		return S;
 	}
 
+/* Precompute this and phi(this) once for several glvmul(W,r), for curves with USE_GLV */
+	public ECP[] glvtable() {
+		ECP Q=new ECP(this);
+		Q.x.mul(new FP(new BIG(ROM.CURVE_Cru)));
+		return table2(this,Q);
+	}
+
+/* return e.this for W=this.glvtable() and r=glvrecode(e). Constant time.
+   Negating phi(this) only permutes the joint table, so one table serves every sign of the split */
+	public static ECP glvmul(ECP[] W,byte[] r) {
+		int s1=(r[0]>>2)&1;
+		int d=s1^((r[0]>>3)&1);
+		ECP[] V=new ECP[12];
+		for (int i=0;i<8;i++)
+		{
+			V[i]=new ECP(W[i]);
+			V[i].cmove(W[i^3],d);
+		}
+		V[8]=W[8]; V[9]=W[9];
+		V[10]=new ECP(W[10]); V[10].cneg(d);
+		V[11]=new ECP(W[11]); V[11].cneg(d);
+		ECP S=eval2(V,r);
+		S.cneg(s1);
+		return S;
+	}
+
 // multiply a point by the curves cofactor
 	public void cfp()
 	{
@@ -1278,6 +1439,102 @@ public final class ECP {
         return P;
     }
 
+/* Batched constant time Map to Point - gives map2point(h[i]) for every i. For Shallue and van de Woestijne
+   the constants are computed once and the per-point inversions are shared (Montgomery's trick) */
+    public static ECP[] map2points(FP[] h)
+    {
+        int n=h.length;
+        ECP[] P=new ECP[n];
+        if (CONFIG_CURVE.CURVETYPE!=CONFIG_CURVE.WEIERSTRASS || ROM.CURVE_A!=0)
+        {
+            for (int i=0;i<n;i++)
+                P[i]=map2point(h[i]);
+            return P;
+        }
+        int Z=CONFIG_FIELD.RIADZ;
+        FP one=new FP(1);
+        FP A=RHS(new FP(Z));
+        FP NA=new FP(A); NA.neg(); NA.norm();
+        FP W=new FP(NA); W.imul(3); W.copy(W.sqrt(null));
+        W.imul(Z);
+        FP C=new FP(Z*Z*3); C.inverse();
+        FP A4=new FP(NA); A4.add(A4); A4.add(A4); A4.norm();
+        C.mul(A4);
+        FP X0=new FP(Z); X0.neg(); X0.norm(); X0.div2();
+        FP Z3=new FP(Z);
+
+        FP[] U=new FP[n];
+        FP[] V=new FP[n];
+        FP[] D=new FP[n];
+        FP t=new FP();
+        for (int i=0;i<n;i++)
+        {
+            t.copy(h[i]); t.sqr();
+            t.mul(A);
+            U[i]=new FP(one); U[i].add(t); U[i].norm();
+            V[i]=new FP(t); V[i].rsub(one); V[i].norm();
+            D[i]=new FP(U[i]); D[i].mul(V[i]);
+        }
+        inverseAll(D);
+
+        FP X1=new FP();
+        FP X2=new FP();
+        FP X3=new FP();
+        FP w=new FP();
+        FP Y=new FP();
+        FP NY=new FP();
+        for (int i=0;i<n;i++)
+        {
+            int sgn=h[i].sign();
+            w.copy(W); w.mul(h[i]); w.mul(V[i]); w.mul(D[i]);
+            X1.copy(X0); X1.sub(w); X1.norm();
+            X2.copy(X0); X2.add(w); X2.norm();
+            t.copy(U[i]); t.sqr(); t.mul(D[i]); t.sqr();
+            t.mul(C);
+            X3.copy(Z3); X3.add(t); X3.norm();
+
+            FP rhs=RHS(X2);
+            X3.cmove(X2,rhs.qr(null));
+            rhs.copy(RHS(X1));
+            X3.cmove(X1,rhs.qr(null));
+            rhs.copy(RHS(X3));
+            Y.copy(rhs.sqrt(null));
+
+            int ne=Y.sign()^sgn;
+            NY.copy(Y); NY.neg(); NY.norm();
+            Y.cmove(NY,ne);
+            P[i]=new ECP(X3.redc(),Y.redc());
+        }
+        return P;
+    }
+
+/* D[i]=1/D[i] for all i with one inversion, 1/0 giving 0 as in FP.inverse. Constant time */
+    private static void inverseAll(FP[] D)
+    {
+        int n=D.length;
+        FP one=new FP(1);
+        FP zero=new FP();
+        FP[] acc=new FP[n];
+        int[] z=new int[n];
+        FP t=new FP(1);
+        for (int i=0;i<n;i++)
+        {
+            z[i]=D[i].iszilch()?1:0;
+            D[i].cmove(one,z[i]);
+            acc[i]=new FP(t);
+            t.mul(D[i]);
+        }
+        t.inverse();
+        FP s=new FP();
+        for (int i=n-1;i>=0;i--)
+        {
+            s.copy(t); s.mul(acc[i]);
+            t.mul(D[i]);
+            D[i].copy(s);
+            D[i].cmove(zero,z[i]);
+        }
+    }
+
 /* Map byte string to curve point
 	public static ECP mapit(byte[] h)
 	{
@@ -96,10 +96,62 @@ public final class FP {
         if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.NOT_SPECIAL) {
             return BIG.monty(new BIG(ROM.Modulus), ROM.MConst, d);
         }
+        if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.WIDE_PSEUDO_MERSENNE) {
+            return wpmod(d);
+        }
 
         return new BIG(0);
     }
 
+    /* reduce a DBIG mod 2^MODBITS-c for a c that does not fit the int multiplier of PSEUDO_MERSENNE.
+       Folds the top half using 2^(NLEN*BASEBITS) = c.2^(NLEN*BASEBITS-MODBITS), then the bits above MODBITS.
+       The result is less than 2*Modulus, as for monty */
+    private static BIG wpmod(DBIG d) {
+        final long k = ROM.PMConst << (BIG.NLEN * CONFIG_BIG.BASEBITS - CONFIG_FIELD.MODBITS);
+        BIG b = new BIG(0);
+        long[] r = b.w;
+        long lo, hi, top, carry;
+        d.norm();
+
+        for (int i = 0; i < BIG.NLEN; i++)
+            r[i] = d.w[i];
+        top = 0;
+        for (int i = 0; i < BIG.NLEN; i++) {
+            long h = d.w[BIG.NLEN + i];
+            lo = h * k;
+            hi = (Math.multiplyHigh(h, k) << (64 - CONFIG_BIG.BASEBITS)) | (lo >>> CONFIG_BIG.BASEBITS);
+            r[i] += lo & BIG.BMASK;
+            if (i < BIG.NLEN - 1) r[i + 1] += hi;
+            else top = hi;
+        }
+        carry = 0;
+        for (int i = 0; i < BIG.NLEN; i++) {
+            r[i] += carry;
+            carry = r[i] >>> CONFIG_BIG.BASEBITS;
+            r[i] &= BIG.BMASK;
+        }
+        top += carry;
+
+        lo = top * k;
+        hi = (Math.multiplyHigh(top, k) << (64 - CONFIG_BIG.BASEBITS)) | (lo >>> CONFIG_BIG.BASEBITS);
+        r[0] += lo & BIG.BMASK;
+        r[1] += hi;
+        carry = 0;
+        for (int i = 0; i < BIG.NLEN; i++) {
+            r[i] += carry;
+            carry = r[i] >>> CONFIG_BIG.BASEBITS;
+            r[i] &= BIG.BMASK;
+        }
+
+        top = (r[BIG.NLEN - 1] >>> TBITS) + (carry << (CONFIG_BIG.BASEBITS - TBITS));
+        r[BIG.NLEN - 1] &= TMASK;
+        lo = top * ROM.PMConst;
+        r[0] += lo & BIG.BMASK;
+        r[1] += lo >>> CONFIG_BIG.BASEBITS;
+        b.norm();
+        return b;
+    }
+
     private static int quo(BIG n, BIG m) {
         int sh;
         long num, den;
@@ -194,7 +246,7 @@ public final class FP {
 
     /* convert to Montgomery n-residue form */
     public void nres() {
-        if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE) {
+        if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.WIDE_PSEUDO_MERSENNE) {
             DBIG d = BIG.mul(x, new BIG(ROM.R2modp)); /*** Change ***/
             x.copy(mod(d));
             XES = 2;
@@ -207,9 +259,14 @@ public final class FP {
 
     /* convert back to regular form */
     public BIG redc() {
-        if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE) {
+        if (CONFIG_FIELD.MODTYPE != CONFIG_FIELD.PSEUDO_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.GENERALISED_MERSENNE && CONFIG_FIELD.MODTYPE != CONFIG_FIELD.WIDE_PSEUDO_MERSENNE) {
             DBIG d = new DBIG(x);
             return mod(d);
+        } else if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.WIDE_PSEUDO_MERSENNE) {
+            // callers rely on a fully reduced result, as monty gives for NOT_SPECIAL
+            FP r = new FP(this);
+            r.reduce();
+            return r.x;
         } else {
             BIG r = new BIG(x);
             return r;
@@ -30,6 +30,7 @@ public static final long[] Modulus= {0xFFFFFEFFFFFC2FL,0xFFFFFFFFFFFFFFL,0xFFFFF
 public static final long[] ROI= {0xFFFFFEFFFFFC2EL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFFFFFFFL,0xFFFFFFFFL};
 public static final long[] R2modp= {0xA1000000000000L,0x7A2000E90L,0x1L,0x0L,0x0L};
 public static final long MConst= 0x38091DD2253531L;
+public static final long PMConst= 0x1000003D1L;
 
 public static final int CURVE_Cof_I= 1;
 public static final long[] CURVE_Cof= {0x1L,0x0L,0x0L,0x0L,0x0L};
@@ -40,5 +41,13 @@ public static final long[] CURVE_Order= {0xD25E8CD0364141L,0xDCE6AF48A03BBFL,0xF
 public static final long[] CURVE_Gx= {0xF2815B16F81798L,0xFCDB2DCE28D959L,0x95CE870B07029BL,0xF9DCBBAC55A062L,0x79BE667EL};
 public static final long[] CURVE_Gy= {0x47D08FFB10D4B8L,0xB448A68554199CL,0xFC0E1108A8FD17L,0x26A3C4655DA4FBL,0x483ADA77L};
 
+// GLV endomorphism (x,y) -> (Cru.x,y) = lambda.(x,y), lattice basis (A1,-B1),(A2,A1) and G1,G2 = round(2^384.(A1,B1)/Order)
+public static final long[] CURVE_Cru= {0x396C28719501EEL,0x497512F58995C1L,0x9EAC3434E99CF0L,0x657C07106E6447L,0x7AE96A2BL};
+public static final long[] CURVE_GLV_A1= {0x6C90E49284EB15L,0xD221A7D46BCDE8L,0x3086L,0x0L,0x0L};
+public static final long[] CURVE_GLV_B1= {0x547FA90ABFE4C3L,0x7ED6010E88286FL,0xE443L,0x0L,0x0L};
+public static final long[] CURVE_GLV_A2= {0xC1108D9D44CFD8L,0x50F7A8E2F3F657L,0x114CAL,0x0L,0x0L};
+public static final long[] CURVE_GLV_G1= {0x93209A45DBB031L,0x8A1471E8CA7FE8L,0xE49284EB153DAAL,0xA7D46BCDE86C90L,0x3086D221L};
+public static final long[] CURVE_GLV_G2= {0x71B4AE8AC47F71L,0x8AC9DF506C615L,0xA90ABFE4C42212L,0x10E88286F547FL,0xE4437ED6L};
+
 }
 
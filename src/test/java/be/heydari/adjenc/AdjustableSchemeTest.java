@@ -1,6 +1,11 @@
 package be.heydari.adjenc;
 
 
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.jce.ECPointUtil;
 import org.bouncycastle.jce.interfaces.ECPointEncoder;
 import org.bouncycastle.math.ec.ECAlgorithms;
@@ -9,11 +14,15 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.security.spec.EllipticCurve;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 public class AdjustableSchemeTest {
 
@@ -59,5 +68,221 @@ public class AdjustableSchemeTest {
         assertEquals(ciphertext1, decodeEcPoint);
     }
 
+    @Test
+    public void encryptAllMatchesEncrypt() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        byte[][] messages = {"My data".getBytes(), "Other data".getBytes(), "My data".getBytes(), new byte[0]};
+
+        ECPoint[] ciphertexts = adjustableScheme.encryptAll(messages, prfKey, sk1);
+
+        assertEquals(messages.length, ciphertexts.length);
+        for (int i = 0; i < messages.length; i++) {
+            ECPoint expected = adjustableScheme.encrypt(messages[i], prfKey, sk1);
+            assertEquals(expected, ciphertexts[i]);
+            assertArrayEquals(adjustableScheme.encodeEcPoint(expected), adjustableScheme.encodeEcPoint(ciphertexts[i]));
+        }
+    }
+
+    @Test
+    public void adjustAllMatchesAdjust() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, adjustableScheme.genSecretKey());
+        byte[][] messages = new byte[16][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ("row " + i).getBytes();
+        }
+        ECPoint[] column = adjustableScheme.encryptAll(messages, prfKey, sk1);
+
+        ECPoint[] adjusted = adjustableScheme.adjustAll(delta, column);
+        byte[][] encoded = new byte[column.length][];
+        for (int i = 0; i < column.length; i++) {
+            encoded[i] = adjustableScheme.encodeEcPoint(column[i]);
+        }
+        byte[][] adjustedEncoded = adjustableScheme.adjustAll(delta, encoded);
+
+        for (int i = 0; i < column.length; i++) {
+            ECPoint expected = adjustableScheme.adjust(delta, column[i]);
+            assertEquals(expected, adjusted[i]);
+            assertArrayEquals(adjustableScheme.encodeEcPoint(expected), adjustedEncoded[i]);
+        }
+    }
+
+    @Test
+    public void keyedPrfMatchesPlainHmac() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        KeyedHMAC messagePrf = adjustableScheme.genMessagePrf(prfKey);
+
+        for (String message : new String[]{"My data", "Other data", "My data"}) {
+            HMac reference = new HMac(new Blake2bDigest(256));
+            reference.init(new KeyParameter(prfKey));
+            reference.update(message.getBytes(), 0, message.length());
+            byte[] expected = new byte[reference.getMacSize()];
+            reference.doFinal(expected, 0);
+
+            assertArrayEquals(expected, messagePrf.hash(message.getBytes()));
+            assertEquals(adjustableScheme.encrypt(message.getBytes(), prfKey, sk1),
+                    adjustableScheme.encrypt(message.getBytes(), messagePrf, sk1));
+        }
+    }
+
+    @Test
+    public void miraclPathIsByteCompatible() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, adjustableScheme.genSecretKey());
+
+        for (int i = 0; i < 8; i++) {
+            byte[] message = ("row " + i).getBytes();
+            ECPoint ciphertext = adjustableScheme.encrypt(message, prfKey, sk1);
+            byte[] encoded = adjustableScheme.encryptToBytes(message, prfKey, sk1);
+            assertArrayEquals(adjustableScheme.encodeEcPoint(ciphertext), encoded);
+
+            assertArrayEquals(adjustableScheme.encodeEcPoint(adjustableScheme.adjust(delta, ciphertext)),
+                    adjustableScheme.adjustBytes(delta, encoded));
+        }
+    }
+
+    @Test
+    public void preparedScalarsMatchPlainScalars() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, adjustableScheme.genSecretKey());
+        PreparedScalar preparedSk = adjustableScheme.prepare(sk1);
+        PreparedScalar preparedDelta = adjustableScheme.prepare(delta);
+
+        for (int i = 0; i < 8; i++) {
+            byte[] message = ("row " + i).getBytes();
+            ECPoint ciphertext = adjustableScheme.encrypt(message, prfKey, sk1);
+            assertEquals(ciphertext, adjustableScheme.encrypt(message, prfKey, preparedSk));
+            byte[] encoded = adjustableScheme.encryptToBytes(message, prfKey, preparedSk);
+            assertArrayEquals(adjustableScheme.encodeEcPoint(ciphertext), encoded);
+
+            ECPoint adjusted = adjustableScheme.adjust(delta, ciphertext);
+            assertEquals(adjusted, adjustableScheme.adjust(preparedDelta, ciphertext));
+            assertArrayEquals(adjustableScheme.encodeEcPoint(adjusted),
+                    adjustableScheme.adjustBytes(preparedDelta, encoded));
+        }
+    }
+
+    @Test
+    public void encryptUnderKeysMatchesEncrypt() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger[] keys = new BigInteger[5];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = adjustableScheme.genSecretKey();
+        }
+        byte[] message = "BE".getBytes();
+
+        ECPoint[] ciphertexts = adjustableScheme.encryptUnderKeys(message, prfKey, keys);
+        assertEquals(keys.length, ciphertexts.length);
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(ciphertexts[i].isNormalized());
+            assertEquals(adjustableScheme.encrypt(message, prfKey, keys[i]), ciphertexts[i]);
+        }
+    }
+
+    @Test
+    public void multiTargetAdjustMatchesAdjust() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        PreparedScalar[] deltas = new PreparedScalar[4];
+        for (int t = 0; t < deltas.length; t++) {
+            deltas[t] = adjustableScheme.prepare(adjustableScheme.genDeltaToken(sk, adjustableScheme.genSecretKey()));
+        }
+        byte[][] column = new byte[6][];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = adjustableScheme.encryptToBytes(("row " + i).getBytes(), prfKey, sk);
+        }
+
+        byte[][][] adjusted = adjustableScheme.adjustAllBytes(deltas, column);
+        for (int i = 0; i < column.length; i++) {
+            byte[][] single = adjustableScheme.adjustBytes(deltas, column[i]);
+            for (int t = 0; t < deltas.length; t++) {
+                byte[] expected = adjustableScheme.adjustBytes(deltas[t], column[i]);
+                assertArrayEquals(expected, single[t]);
+                assertArrayEquals(expected, adjusted[t][i]);
+            }
+        }
+    }
+
+    @Test
+    public void pointFormatsRoundTrip() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        ECPoint[] column = adjustableScheme.encryptAll(new byte[][]{"BE".getBytes(), "NL".getBytes(), "FR".getBytes()}, prfKey, sk);
+
+        for (PointFormat format : PointFormat.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 + column.length * format.size());
+            buffer.put((byte) 0x7f);
+            for (ECPoint c : column) {
+                byte[] encoded = adjustableScheme.encodeEcPoint(c, format);
+                assertEquals(format.size(), encoded.length);
+                assertEquals(c, adjustableScheme.decodeEcPoint(encoded, format));
+                buffer.put(encoded);
+            }
+            buffer.flip();
+            buffer.position(1);
+            assertArrayEquals(column, adjustableScheme.decodeAll(buffer, format, false));
+            assertArrayEquals(column, adjustableScheme.decodeAll(buffer, format, true));
+            assertEquals(1, buffer.position());
+        }
+        assertArrayEquals(adjustableScheme.encodeEcPoint(column[0]),
+                adjustableScheme.encodeEcPoint(column[0], PointFormat.COMPRESSED));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void untrustedRawDecodeValidates() throws NoSuchAlgorithmException {
+        byte[] raw = adjustableScheme.encodeEcPoint(
+                adjustableScheme.encrypt("BE".getBytes(), adjustableScheme.genMessagePrfKey(), BigInteger.TEN), PointFormat.RAW);
+        raw[63] ^= 1;
+        adjustableScheme.decodeAll(ByteBuffer.wrap(raw), PointFormat.RAW, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trustedUncompressedDecodeChecksPrefix() throws NoSuchAlgorithmException {
+        byte[] uncompressed = adjustableScheme.encodeEcPoint(
+                adjustableScheme.encrypt("BE".getBytes(), adjustableScheme.genMessagePrfKey(), BigInteger.TEN), PointFormat.UNCOMPRESSED);
+        uncompressed[0] = 0x02;
+        adjustableScheme.decodeAll(ByteBuffer.wrap(uncompressed), PointFormat.UNCOMPRESSED, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void infinityHasNoUncompressedEncoding() {
+        adjustableScheme.encodeEcPoint(adjustableScheme.decodeEcPoint(new byte[]{0}), PointFormat.UNCOMPRESSED);
+    }
+
+    @Test
+    public void xOnlyCiphertextsAdjust() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger sk2 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, sk2);
+
+        for (int i = 0; i < 8; i++) {
+            byte[] message = ("row " + i).getBytes();
+            byte[] x = adjustableScheme.encryptX(message, prfKey, sk1);
+            assertEquals(AdjustableScheme.X_ONLY_SIZE, x.length);
+            byte[] encoded = adjustableScheme.encryptToBytes(message, prfKey, sk1);
+            assertArrayEquals(Arrays.copyOfRange(encoded, 1, encoded.length), x);
+
+            byte[] expected = adjustableScheme.encryptX(message, prfKey, sk2);
+            assertArrayEquals(expected, adjustableScheme.adjustX(delta, x));
+            assertArrayEquals(expected, adjustableScheme.adjustX(adjustableScheme.prepare(delta), x));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void xOffTheCurveIsRejected() {
+        // x^3+7 is not a square for x=0
+        adjustableScheme.adjustX(BigInteger.TEN, new byte[AdjustableScheme.X_ONLY_SIZE]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortEncodingIsRejected() {
+        adjustableScheme.adjustBytes(BigInteger.TEN, new byte[]{2, 1});
+    }
 
-}
\ No newline at end of file
+}
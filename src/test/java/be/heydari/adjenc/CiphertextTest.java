@@ -0,0 +1,68 @@
+package be.heydari.adjenc;
+
+import be.heydari.adjenc.buildingblocks.PreparedScalar;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CiphertextTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void lazyCiphertextsEncodeLikeEagerOnes() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, adjustableScheme.genSecretKey());
+        PreparedScalar preparedSk = adjustableScheme.prepare(sk1);
+        PreparedScalar preparedDelta = adjustableScheme.prepare(delta);
+
+        Ciphertext[] column = new Ciphertext[16];
+        for (int i = 0; i < column.length; i++) {
+            column[i] = adjustableScheme.encryptLazy(("row " + i % 5).getBytes(), prfKey, preparedSk);
+            assertFalse(column[i].isNormalized());
+        }
+        Ciphertext[] adjusted = adjustableScheme.adjustAll(preparedDelta, column);
+        byte[][] encoded = Ciphertext.encodeAll(adjusted);
+        for (int i = 0; i < column.length; i++) {
+            assertTrue(adjusted[i].isNormalized());
+            byte[] eager = adjustableScheme.adjustBytes(delta,
+                    adjustableScheme.encryptToBytes(("row " + i % 5).getBytes(), prfKey, sk1));
+            assertArrayEquals(eager, encoded[i]);
+            assertArrayEquals(eager, adjusted[i].getEncoded());
+            assertEquals(Ciphertext.fromEncoded(eager), adjusted[i]);
+        }
+        assertArrayEquals(column[3].getEncoded(), adjustableScheme.encryptToBytes("row 3".getBytes(), prfKey, sk1));
+    }
+
+    @Test
+    public void projectiveEqualityWithoutNormalizing() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger sk2 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, sk2);
+
+        // the same point reached along two paths has different projective coordinates
+        Ciphertext direct = adjustableScheme.encryptLazy("My data".getBytes(), prfKey, adjustableScheme.prepare(sk2));
+        Ciphertext adjusted = adjustableScheme.adjust(adjustableScheme.prepare(delta),
+                adjustableScheme.encryptLazy("My data".getBytes(), prfKey, adjustableScheme.prepare(sk1)));
+        Ciphertext other = adjustableScheme.encryptLazy("Other data".getBytes(), prfKey, adjustableScheme.prepare(sk2));
+
+        assertEquals(direct, adjusted);
+        assertNotEquals(direct, other);
+        assertFalse(direct.isNormalized());
+        assertFalse(adjusted.isNormalized());
+        assertEquals(direct.hashCode(), adjusted.hashCode());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shortEncodingIsRejected() {
+        Ciphertext.fromEncoded(new byte[]{2, 1});
+    }
+}
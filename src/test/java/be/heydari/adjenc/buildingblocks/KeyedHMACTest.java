@@ -0,0 +1,48 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.crypto.digests.Blake2bDigest;
+import org.bouncycastle.crypto.macs.HMac;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class KeyedHMACTest {
+
+    @Test
+    public void matchesBouncyCastleHMac() {
+        Random random = new Random(5);
+        // shorter than, equal to and longer than the 128-byte Blake2b block
+        for (int keyLength : new int[]{16, 128, 256}) {
+            byte[] key = new byte[keyLength];
+            random.nextBytes(key);
+            KeyedHMAC keyed = new KeyedHMAC(key, 256);
+            HMac hmac = new HMac(new Blake2bDigest(256));
+            hmac.init(new KeyParameter(key));
+
+            for (int messageLength : new int[]{0, 5, 128, 300}) {
+                byte[] message = new byte[messageLength];
+                random.nextBytes(message);
+                byte[] expected = new byte[hmac.getMacSize()];
+                hmac.update(message, 0, message.length);
+                hmac.doFinal(expected, 0);
+                assertArrayEquals(expected, keyed.hash(message));
+            }
+        }
+    }
+
+    @Test
+    public void sameKeyReusesKeyedHMAC() {
+        HMAC hmac = new HMAC("NativePRNG", 256, 256);
+        byte[] key = hmac.generateKey();
+        KeyedHMAC keyed = hmac.keyed(key);
+        assertSame(keyed, hmac.keyed(key.clone()));
+        assertNotSame(keyed, hmac.keyed(hmac.generateKey()));
+        // interleaving with a second key keeps both instances
+        assertSame(keyed, hmac.keyed(key));
+    }
+}
@@ -0,0 +1,43 @@
+package be.heydari.adjenc.buildingblocks;
+
+import org.bouncycastle.util.BigIntegers;
+import org.junit.Test;
+import org.miracl.core.SECP256K1.ECP;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MapToCurveSecP256k1Test {
+
+    private static final BigInteger P = BigInteger.ONE.shiftLeft(256)
+            .subtract(BigInteger.ONE.shiftLeft(32)).subtract(BigInteger.valueOf(977));
+
+    MapToCurveSecP256k1 mapToCurve = new MapToCurveSecP256k1(new HMAC("NativePRNG", 256, 256), new Hash());
+
+    @Test
+    public void batchMatchesSinglePointMap() {
+        Random rnd = new Random(3);
+        byte[][] digests = new byte[64][];
+        for (int i = 0; i < digests.length; i++) {
+            digests[i] = new byte[32];
+            rnd.nextBytes(digests[i]);
+        }
+        digests[0] = new byte[32];
+        // h^2 = 1/g(1) = 1/8 makes the denominator of the map vanish
+        BigInteger inv8 = BigInteger.valueOf(8).modInverse(P);
+        digests[1] = BigIntegers.asUnsignedByteArray(32, inv8.modPow(P.add(BigInteger.ONE).shiftRight(2), P));
+        digests[2] = BigIntegers.asUnsignedByteArray(32, P.subtract(BigInteger.ONE));
+
+        ECP[] batch = mapToCurve.mapToPoints(digests);
+        assertEquals(digests.length, batch.length);
+        for (int i = 0; i < digests.length; i++) {
+            ECP single = mapToCurve.mapToPoint(digests[i]);
+            assertTrue("digest " + i, single.equals(batch[i]));
+            assertEquals(single.is_infinity(), batch[i].is_infinity());
+        }
+        assertEquals(0, mapToCurve.mapToPoints(new byte[0][]).length);
+    }
+}
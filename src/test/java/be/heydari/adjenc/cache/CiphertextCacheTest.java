@@ -0,0 +1,83 @@
+package be.heydari.adjenc.cache;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class CiphertextCacheTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void cachedCiphertextsMatchEncrypt() throws NoSuchAlgorithmException {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        CiphertextCache cache = CiphertextCache.maxEntries(adjustableScheme, prfKey, sk, 16);
+
+        for (int i = 0; i < 30; i++) {
+            byte[] message = ("BE-" + i % 3).getBytes();
+            assertEquals(adjustableScheme.encrypt(message, prfKey, sk), cache.encrypt(message));
+        }
+        assertEquals(27, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(0, cache.getEvictionCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void hitsReturnFreshPoints() {
+        CiphertextCache cache = CiphertextCache.maxEntries(adjustableScheme,
+                adjustableScheme.genMessagePrfKey(), adjustableScheme.genSecretKey(), 16);
+        byte[] message = "BE".getBytes();
+        ECPoint first = cache.encrypt(message);
+        ECPoint second = cache.encrypt(message);
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        assertNotSame(second, cache.encrypt(message));
+    }
+
+    @Test
+    public void hotValuesSurviveAScan() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        CiphertextCache cache = CiphertextCache.maxEntries(adjustableScheme, prfKey, adjustableScheme.genSecretKey(), 10);
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 4; i++) {
+                cache.encrypt(("hot " + i).getBytes());
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            cache.encrypt(("cold " + i).getBytes());
+        }
+        long hits = cache.getHitCount();
+        for (int i = 0; i < 4; i++) {
+            cache.encrypt(("hot " + i).getBytes());
+        }
+        assertEquals(hits + 4, cache.getHitCount());
+        assertEquals(10, cache.size());
+        assertEquals(34, cache.getEvictionCount());
+    }
+
+    @Test
+    public void boundedByBytes() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        long bound = 5 * (100 + CiphertextCache.ENTRY_OVERHEAD);
+        CiphertextCache cache = CiphertextCache.maxBytes(adjustableScheme, prfKey, adjustableScheme.genSecretKey(), bound);
+
+        for (int i = 0; i < 20; i++) {
+            byte[] message = new byte[100];
+            message[0] = (byte) i;
+            cache.encrypt(message);
+        }
+        assertTrue(cache.weight() <= bound);
+        assertEquals(5, cache.size());
+        assertEquals(15, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,103 @@
+package be.heydari.adjenc.cache;
+
+import be.heydari.adjenc.AdjustableScheme;
+import be.heydari.adjenc.buildingblocks.KeyedHMAC;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedPointCacheTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void cachedSchemeMatchesUncachedScheme() throws NoSuchAlgorithmException {
+        HashedPointCache cache = new HashedPointCache(64);
+        AdjustableScheme cachedScheme = new AdjustableScheme(cache);
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+
+        for (int column = 0; column < 3; column++) {
+            BigInteger sk = adjustableScheme.genSecretKey();
+            for (int i = 0; i < 4; i++) {
+                byte[] message = ("BE-" + i).getBytes();
+                assertEquals(adjustableScheme.encrypt(message, prfKey, sk), cachedScheme.encrypt(message, prfKey, sk));
+                assertArrayEquals(adjustableScheme.encryptToBytes(message, prfKey, sk),
+                        cachedScheme.encryptToBytes(message, prfKey, sk));
+            }
+        }
+        assertEquals(4, cache.size());
+        assertEquals(4, cache.stats().missCount());
+        assertEquals(20, cache.stats().hitCount());
+
+        byte[][] messages = {"BE-0".getBytes(), "BE-9".getBytes(), "BE-3".getBytes()};
+        BigInteger sk = adjustableScheme.genSecretKey();
+        assertArrayEquals(adjustableScheme.encryptAll(messages, prfKey, sk), cachedScheme.encryptAll(messages, prfKey, sk));
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void keyedByPrfKey() {
+        HashedPointCache cache = new HashedPointCache(64);
+        AdjustableScheme cachedScheme = new AdjustableScheme(cache);
+        BigInteger sk = adjustableScheme.genSecretKey();
+        byte[] message = "BE".getBytes();
+
+        byte[] first = cachedScheme.encryptToBytes(message, adjustableScheme.genMessagePrfKey(), sk);
+        byte[] second = cachedScheme.encryptToBytes(message, adjustableScheme.genMessagePrfKey(), sk);
+        assertFalse(Arrays.equals(first, second));
+        assertEquals(2, cache.size());
+        assertEquals(0, cache.stats().hitCount());
+    }
+
+    @Test
+    public void boundedSize() {
+        HashedPointCache cache = new HashedPointCache(8);
+        AdjustableScheme cachedScheme = new AdjustableScheme(cache);
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+
+        for (int i = 0; i < 50; i++) {
+            cachedScheme.encryptToBytes(("BE-" + i).getBytes(), prfKey, sk);
+        }
+        assertTrue(cache.size() <= 8);
+        assertTrue(cache.stats().evictionCount() >= 42);
+    }
+
+    @Test
+    public void sharedAcrossKeyedHMACsWithTheSameKey() {
+        HashedPointCache cache = new HashedPointCache(64);
+        AdjustableScheme cachedScheme = new AdjustableScheme(cache);
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        byte[] message = "BE".getBytes();
+
+        byte[] first = cachedScheme.encryptToBytes(message, new KeyedHMAC(prfKey, 256), sk);
+        byte[] second = cachedScheme.encryptToBytes(message, new KeyedHMAC(prfKey, 256), sk);
+        assertArrayEquals(first, second);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    public void invalidateAllForgetsKeys() {
+        HashedPointCache cache = new HashedPointCache(64);
+        AdjustableScheme cachedScheme = new AdjustableScheme(cache);
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        byte[] message = "BE".getBytes();
+
+        byte[] first = cachedScheme.encryptToBytes(message, prfKey, sk);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertArrayEquals(first, cachedScheme.encryptToBytes(message, prfKey, sk));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.stats().missCount());
+    }
+}
@@ -0,0 +1,50 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FingerprintTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void encodingsShareFingerprints() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        byte[] encoded = adjustableScheme.encryptToBytes("BE".getBytes(), prfKey, sk);
+        byte[] x = adjustableScheme.encryptX("BE".getBytes(), prfKey, sk);
+        byte[] other = adjustableScheme.encryptToBytes("NL".getBytes(), prfKey, sk);
+
+        assertEquals(Fingerprint.fingerprint64(encoded), Fingerprint.fingerprint64(x));
+        assertArrayEquals(Fingerprint.fingerprint128(encoded), Fingerprint.fingerprint128(x));
+        assertNotEquals(Fingerprint.fingerprint64(encoded), Fingerprint.fingerprint64(other));
+
+        ByteBuffer column = ByteBuffer.allocate(2 * AdjustableScheme.ENCODED_POINT_SIZE).put(other).put(encoded);
+        int offset = AdjustableScheme.ENCODED_POINT_SIZE;
+        assertEquals(Fingerprint.fingerprint64(encoded), Fingerprint.fingerprint64(column, offset));
+        assertEquals(Fingerprint.fingerprint128(encoded)[1], Fingerprint.fingerprint128Low(column, offset));
+
+        assertTrue(Fingerprint.verify(ByteBuffer.wrap(encoded), 0, column, offset));
+        assertFalse(Fingerprint.verify(ByteBuffer.wrap(encoded), 0, column, 0));
+    }
+
+    @Test
+    public void negatedPointsCollideButDoNotVerify() {
+        byte[] encoded = adjustableScheme.encryptToBytes("BE".getBytes(),
+                adjustableScheme.genMessagePrfKey(), adjustableScheme.genSecretKey());
+        byte[] negated = encoded.clone();
+        negated[0] ^= 1;
+
+        assertEquals(Fingerprint.fingerprint64(encoded), Fingerprint.fingerprint64(negated));
+        assertFalse(Fingerprint.verify(encoded, negated));
+    }
+}
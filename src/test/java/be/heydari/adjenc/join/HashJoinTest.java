@@ -0,0 +1,84 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertEquals;
+
+public class HashJoinTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    static final String[] LEFT = {"be", "nl", "fr", "be", "de", "lu"};
+    static final String[] RIGHT = {"nl", "be", "us", "de", "de", "be", "uk"};
+
+    @Test
+    public void joinColumnsUnderDifferentKeys() throws Exception {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger sk2 = adjustableScheme.genSecretKey();
+        BigInteger common = adjustableScheme.genSecretKey();
+
+        ByteBuffer left = column(LEFT, prfKey, sk1);
+        ByteBuffer right = column(RIGHT, prfKey, sk2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            HashJoin join = new HashJoin(adjustableScheme, executor, 4, 2);
+            assertEquals(expectedPairs(), join(join, left, adjustableScheme.genDeltaToken(sk1, common),
+                    right, adjustableScheme.genDeltaToken(sk2, common)));
+            // right side already under the common key
+            assertEquals(expectedPairs(), join(join, left, adjustableScheme.genDeltaToken(sk1, sk2), right, null));
+            // larger column on the left builds on the right
+            Set<String> swapped = new HashSet<>();
+            for (String pair : join(join, right, null, left, adjustableScheme.genDeltaToken(sk1, sk2))) {
+                String[] rows = pair.split(":");
+                swapped.add(rows[1] + ":" + rows[0]);
+            }
+            assertEquals(expectedPairs(), swapped);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Set<String> join(HashJoin join, ByteBuffer left, BigInteger leftDelta,
+                                    ByteBuffer right, BigInteger rightDelta) throws Exception {
+        Set<String> pairs = ConcurrentHashMap.newKeySet();
+        join.join(left, leftDelta, right, rightDelta, (l, r) -> pairs.add(l + ":" + r));
+        return pairs;
+    }
+
+    static Set<String> expectedPairs() {
+        Set<String> pairs = new HashSet<>();
+        for (int l = 0; l < LEFT.length; l++) {
+            for (int r = 0; r < RIGHT.length; r++) {
+                if (LEFT[l].equals(RIGHT[r])) {
+                    pairs.add(l + ":" + r);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    ByteBuffer column(String[] values, byte[] prfKey, BigInteger sk) throws NoSuchAlgorithmException {
+        byte[][] messages = Arrays.stream(values).map(String::getBytes).toArray(byte[][]::new);
+        ECPoint[] ciphertexts = adjustableScheme.encryptAll(messages, prfKey, sk);
+        ByteBuffer column = ByteBuffer.allocate(ciphertexts.length * AdjustableScheme.ENCODED_POINT_SIZE);
+        for (ECPoint c : ciphertexts) {
+            column.put(adjustableScheme.encodeEcPoint(c));
+        }
+        column.flip();
+        return column;
+    }
+}
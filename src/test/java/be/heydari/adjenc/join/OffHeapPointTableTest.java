@@ -0,0 +1,66 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapPointTableTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void putAndGetWithDuplicates() throws Exception {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk = adjustableScheme.genSecretKey();
+        byte[][] messages = new byte[100][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ("key " + i % 40).getBytes();
+        }
+        ECPoint[] ciphertexts = adjustableScheme.encryptAll(messages, prfKey, sk);
+
+        OffHeapPointTable table = new OffHeapPointTable(ciphertexts.length);
+        for (int i = 0; i < ciphertexts.length; i++) {
+            table.put(adjustableScheme.encodeEcPoint(ciphertexts[i]), i);
+        }
+        assertEquals(ciphertexts.length, table.size());
+        assertTrue(table.capacity() * OffHeapPointTable.LOAD_FACTOR >= ciphertexts.length);
+        assertEquals(135, table.capacity());
+
+        for (int i = 0; i < 40; i++) {
+            List<Long> rows = new ArrayList<>();
+            int matches = table.get(adjustableScheme.encodeEcPoint(ciphertexts[i]), rows::add);
+            assertEquals(i < 20 ? 3 : 2, matches);
+            for (long row : rows) {
+                assertEquals(i, row % 40);
+            }
+        }
+
+        byte[] missing = adjustableScheme.encodeEcPoint(adjustableScheme.encrypt("absent".getBytes(), prfKey, sk));
+        assertEquals(0, table.get(missing, row -> { }));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keysMustBeCompressedPoints() {
+        try (OffHeapPointTable table = new OffHeapPointTable(4)) {
+            table.put(new byte[OffHeapPointTable.KEY_SIZE], 0);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void closedTablesRejectLookups() throws Exception {
+        OffHeapPointTable table = new OffHeapPointTable(4);
+        byte[] key = adjustableScheme.encodeEcPoint(adjustableScheme.encrypt("BE".getBytes(),
+                adjustableScheme.genMessagePrfKey(), adjustableScheme.genSecretKey()));
+        table.put(key, 0);
+        table.close();
+        table.close();
+        table.get(key, row -> { });
+    }
+}
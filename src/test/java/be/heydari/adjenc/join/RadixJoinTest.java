@@ -0,0 +1,59 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import static be.heydari.adjenc.join.HashJoinTest.LEFT;
+import static be.heydari.adjenc.join.HashJoinTest.RIGHT;
+import static be.heydari.adjenc.join.HashJoinTest.expectedPairs;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RadixJoinTest {
+
+    HashJoinTest columns = new HashJoinTest();
+
+    @Test
+    public void joinColumnsUnderDifferentKeys() throws Exception {
+        AdjustableScheme adjustableScheme = columns.adjustableScheme;
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger sk2 = adjustableScheme.genSecretKey();
+        BigInteger common = adjustableScheme.genSecretKey();
+
+        ByteBuffer left = columns.column(LEFT, prfKey, sk1);
+        ByteBuffer right = columns.column(RIGHT, prfKey, sk2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // one pass, two passes, and two passes with 2-row chunks
+            RadixJoin[] joins = {
+                    new RadixJoin(adjustableScheme, executor, 3, 0, 1 << 10),
+                    new RadixJoin(adjustableScheme, executor, 2, 2, 1 << 10),
+                    new RadixJoin(adjustableScheme, executor, 1, 3, 2)
+            };
+            for (RadixJoin join : joins) {
+                Set<String> pairs = ConcurrentHashMap.newKeySet();
+                JoinTimings timings = join.join(left, adjustableScheme.genDeltaToken(sk1, common),
+                        right, adjustableScheme.genDeltaToken(sk2, common), (l, r) -> pairs.add(l + ":" + r));
+                assertEquals(expectedPairs(), pairs);
+                assertTrue(timings.getTotalNanos() > 0);
+
+                // the larger column on the left builds on the right
+                Set<String> swapped = ConcurrentHashMap.newKeySet();
+                join.join(right, null, left, adjustableScheme.genDeltaToken(sk1, sk2),
+                        (l, r) -> swapped.add(r + ":" + l));
+                assertEquals(expectedPairs(), swapped);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
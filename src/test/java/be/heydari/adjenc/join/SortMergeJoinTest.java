@@ -0,0 +1,89 @@
+package be.heydari.adjenc.join;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class SortMergeJoinTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void joinSpilledRunsUnderDifferentKeys() throws Exception {
+        Random random = new Random(7);
+        String[] left = values(random, 40);
+        String[] right = values(random, 55);
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger sk2 = adjustableScheme.genSecretKey();
+        BigInteger common = adjustableScheme.genSecretKey();
+        Path leftFile = column(left, prfKey, sk1);
+        Path rightFile = column(right, prfKey, sk2);
+        File spill = folder.newFolder();
+
+        // 7-row runs and 3-record buffers force several runs and refills per side
+        SortMergeJoin join = new SortMergeJoin(adjustableScheme, 7, spill.toPath(), 3 * (33 + 8));
+        List<String> pairs = new ArrayList<>();
+        join.join(leftFile, adjustableScheme.genDeltaToken(sk1, common),
+                rightFile, adjustableScheme.genDeltaToken(sk2, common), (l, r) -> pairs.add(l + ":" + r));
+        assertEquals(expectedPairs(left, right), sorted(pairs));
+        assertEquals(0, spill.list().length);
+
+        pairs.clear();
+        join.join(leftFile, adjustableScheme.genDeltaToken(sk1, sk2), rightFile, null,
+                (l, r) -> pairs.add(l + ":" + r));
+        assertEquals(expectedPairs(left, right), sorted(pairs));
+    }
+
+    private static String[] values(Random random, int rows) {
+        String[] values = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            values[i] = "v" + random.nextInt(12);
+        }
+        return values;
+    }
+
+    private static List<String> expectedPairs(String[] left, String[] right) {
+        List<String> pairs = new ArrayList<>();
+        for (int l = 0; l < left.length; l++) {
+            for (int r = 0; r < right.length; r++) {
+                if (left[l].equals(right[r])) {
+                    pairs.add(l + ":" + r);
+                }
+            }
+        }
+        return sorted(pairs);
+    }
+
+    private static List<String> sorted(List<String> pairs) {
+        List<String> copy = new ArrayList<>(pairs);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private Path column(String[] values, byte[] prfKey, BigInteger sk) throws Exception {
+        Path file = folder.newFile().toPath();
+        byte[] column = new byte[values.length * AdjustableScheme.ENCODED_POINT_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            byte[] encoded = adjustableScheme.encryptToBytes(values[i].getBytes(), prfKey, sk);
+            System.arraycopy(encoded, 0, column, i * encoded.length, encoded.length);
+        }
+        Files.write(file, column);
+        return file;
+    }
+}
@@ -0,0 +1,62 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AdjustOnReadReaderTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void staleRowsAreAdjustedAndWrittenBack() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        KeyEpochRegistry registry = new KeyEpochRegistry(adjustableScheme);
+        registry.register("customers.country");
+        BigInteger[] keys = new BigInteger[3];
+        keys[0] = adjustableScheme.genSecretKey();
+
+        // row i is written at epoch i % 3, rotating the key in between
+        ByteBuffer column = ByteBuffer.allocate(9 * AdjustOnReadReader.TAGGED_POINT_SIZE);
+        for (int i = 0; i < 9; i++) {
+            int epoch = i % 3;
+            if (epoch > registry.currentEpoch("customers.country")) {
+                keys[epoch] = adjustableScheme.genSecretKey();
+                registry.rotate("customers.country", adjustableScheme.genDeltaToken(keys[epoch - 1], keys[epoch]));
+            }
+            byte[] ciphertext = adjustableScheme.encryptToBytes(("row " + i).getBytes(), prfKey, keys[epoch]);
+            column.put(AdjustOnReadReader.tag(epoch, ciphertext));
+        }
+        column.flip();
+
+        ByteBuffer untagged = ByteBuffer.allocate(9 * AdjustableScheme.ENCODED_POINT_SIZE);
+        new AdjustOnReadReader(registry, "customers.country", false).readAll(column, untagged);
+        AdjustOnReadReader reader = new AdjustOnReadReader(registry, "customers.country", true);
+        for (int i = 0; i < 9; i++) {
+            byte[] expected = adjustableScheme.encryptToBytes(("row " + i).getBytes(), prfKey, keys[2]);
+            byte[] fromColumn = new byte[AdjustableScheme.ENCODED_POINT_SIZE];
+            untagged.position(i * fromColumn.length);
+            untagged.get(fromColumn);
+            assertArrayEquals(expected, fromColumn);
+            assertEquals(i % 3, column.getInt(i * AdjustOnReadReader.TAGGED_POINT_SIZE));
+
+            assertArrayEquals(expected, reader.read(column, i));
+            assertEquals(2, column.getInt(i * AdjustOnReadReader.TAGGED_POINT_SIZE));
+            assertArrayEquals(expected, reader.read(column, i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void futureEpochIsRejected() {
+        KeyEpochRegistry registry = new KeyEpochRegistry(adjustableScheme);
+        registry.register("orders.customer");
+        byte[] ciphertext = adjustableScheme.encryptToBytes("BE".getBytes(),
+                adjustableScheme.genMessagePrfKey(), adjustableScheme.genSecretKey());
+        new AdjustOnReadReader(registry, "orders.customer", true).read(AdjustOnReadReader.tag(3, ciphertext));
+    }
+}
@@ -0,0 +1,49 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class KeyEpochRegistryTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void staleCiphertextCatchesUpInOneStep() {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        byte[] message = "BE".getBytes();
+        KeyEpochRegistry registry = new KeyEpochRegistry(adjustableScheme);
+        registry.register("customers.country");
+
+        BigInteger[] keys = new BigInteger[5];
+        keys[0] = adjustableScheme.genSecretKey();
+        for (int epoch = 1; epoch < keys.length; epoch++) {
+            keys[epoch] = adjustableScheme.genSecretKey();
+            assertEquals(epoch, registry.rotate("customers.country",
+                    adjustableScheme.genDeltaToken(keys[epoch - 1], keys[epoch])));
+        }
+        assertEquals(4, registry.currentEpoch("customers.country"));
+
+        byte[] current = adjustableScheme.encryptToBytes(message, prfKey, keys[4]);
+        for (int epoch = 0; epoch < keys.length; epoch++) {
+            byte[] stale = adjustableScheme.encryptToBytes(message, prfKey, keys[epoch]);
+            assertArrayEquals(current, registry.catchUp("customers.country", epoch, stale));
+        }
+        assertArrayEquals(adjustableScheme.encryptToBytes(message, prfKey, keys[3]),
+                adjustableScheme.adjustBytes(registry.compose("customers.country", 1, 3),
+                        adjustableScheme.encryptToBytes(message, prfKey, keys[1])));
+        assertSame(registry.compose("customers.country", 1, 3), registry.compose("customers.country", 1, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void futureEpochsAreRejected() {
+        KeyEpochRegistry registry = new KeyEpochRegistry(adjustableScheme);
+        registry.register("orders.customer");
+        registry.catchUpToken("orders.customer", 1);
+    }
+}
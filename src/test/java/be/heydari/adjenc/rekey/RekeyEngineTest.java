@@ -0,0 +1,58 @@
+package be.heydari.adjenc.rekey;
+
+import be.heydari.adjenc.AdjustableScheme;
+import org.bouncycastle.math.ec.ECPoint;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RekeyEngineTest {
+
+    AdjustableScheme adjustableScheme = new AdjustableScheme();
+
+    @Test
+    public void rekeyMatchesAdjust() throws Exception {
+        byte[] prfKey = adjustableScheme.genMessagePrfKey();
+        BigInteger sk1 = adjustableScheme.genSecretKey();
+        BigInteger delta = adjustableScheme.genDeltaToken(sk1, adjustableScheme.genSecretKey());
+
+        byte[][] messages = new byte[50][];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = ("row " + i).getBytes();
+        }
+        ECPoint[] column = adjustableScheme.encryptAll(messages, prfKey, sk1);
+        ByteBuffer in = ByteBuffer.allocate(column.length * AdjustableScheme.ENCODED_POINT_SIZE);
+        for (ECPoint c : column) {
+            in.put(adjustableScheme.encodeEcPoint(c));
+        }
+        in.flip();
+        ByteBuffer out = ByteBuffer.allocateDirect(in.remaining());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RekeyJob job = new RekeyEngine(adjustableScheme, executor, 16, 5).rekey(delta, in, out);
+            job.await();
+
+            assertTrue(job.isDone());
+            assertEquals(4, job.getPartitionCount());
+            assertEquals(2, job.getPartitionRowsDone(3));
+            assertEquals(column.length, job.getRowsDone());
+            assertTrue(job.getRowsPerSecond() > 0);
+        } finally {
+            executor.shutdown();
+        }
+
+        byte[] encoded = new byte[AdjustableScheme.ENCODED_POINT_SIZE];
+        for (ECPoint c : column) {
+            out.get(encoded);
+            assertArrayEquals(adjustableScheme.encodeEcPoint(adjustableScheme.adjust(delta, c)), encoded);
+        }
+    }
+}
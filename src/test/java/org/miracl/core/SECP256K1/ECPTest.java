@@ -0,0 +1,103 @@
+package org.miracl.core.SECP256K1;
+
+import org.bouncycastle.asn1.x9.X9ECParameters;
+import org.bouncycastle.crypto.ec.CustomNamedCurves;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cross-checks MIRACL scalar multiplication, which uses the GLV
+ * endomorphism for secp256k1, against BouncyCastle.
+ */
+public class ECPTest {
+
+    private static final X9ECParameters CURVE = CustomNamedCurves.getByName("secp256k1");
+    private static final BigInteger N = CURVE.getN();
+    private static final BigInteger LAMBDA =
+            new BigInteger("5363ad4cc05c30e0a5261c028812645a122e22ea20816678df02967c1b23bd72", 16);
+
+    private final Random rnd = new Random(7);
+
+    @Test
+    public void mulMatchesBouncyCastle() {
+        ECP g = ECP.generator();
+        ECP p = g.mul(big(new BigInteger(256, rnd).mod(N)));
+        BigInteger[] edges = {BigInteger.ONE, BigInteger.valueOf(2), BigInteger.valueOf(3),
+                N.subtract(BigInteger.ONE), N.subtract(BigInteger.valueOf(2)), N.shiftRight(1),
+                LAMBDA, N.subtract(LAMBDA), BigInteger.ONE.shiftLeft(128), BigInteger.ONE.shiftLeft(255),
+                N.add(BigInteger.valueOf(5))};
+        for (BigInteger k : edges) {
+            checkMul(g, k);
+            checkMul(p, k);
+        }
+        for (int i = 0; i < 300; i++) {
+            checkMul(p, new BigInteger(256, rnd).mod(N));
+        }
+    }
+
+    @Test
+    public void mul2MatchesBouncyCastle() {
+        ECP p = ECP.generator().mul(big(new BigInteger(256, rnd).mod(N)));
+        ECP q = ECP.generator().mul(big(new BigInteger(256, rnd).mod(N)));
+        ECPoint bp = CURVE.getCurve().decodePoint(bytes(p));
+        ECPoint bq = CURVE.getCurve().decodePoint(bytes(q));
+        for (int i = 0; i < 50; i++) {
+            BigInteger e = new BigInteger(256, rnd).mod(N);
+            BigInteger f = new BigInteger(i, rnd);
+            ECPoint expected = bp.multiply(e).add(bq.multiply(f)).normalize();
+            assertArrayEquals(expected.getEncoded(true), bytes(p.mul2(big(e), q, big(f))));
+        }
+    }
+
+    @Test
+    public void glvRecodingCanBeReused() {
+        BigInteger k = new BigInteger(256, rnd).mod(N);
+        byte[] recoded = ECP.glvrecode(big(k));
+        for (int i = 0; i < 20; i++) {
+            ECP p = ECP.generator().mul(big(new BigInteger(256, rnd).mod(N)));
+            assertArrayEquals(bytes(p.mul(big(k))), bytes(p.glvmul(recoded)));
+        }
+    }
+
+    @Test
+    public void glvTableServesManyScalars() {
+        ECP p = ECP.generator().mul(big(new BigInteger(256, rnd).mod(N)));
+        ECP[] table = p.glvtable();
+        BigInteger[] edges = {BigInteger.ONE, BigInteger.valueOf(2), N.subtract(BigInteger.ONE), N.shiftRight(1)};
+        for (BigInteger k : edges) {
+            assertArrayEquals(bytes(p.mul(big(k))), bytes(ECP.glvmul(table, ECP.glvrecode(big(k)))));
+        }
+        for (int i = 0; i < 40; i++) {
+            BigInteger k = new BigInteger(256, rnd).mod(N);
+            assertArrayEquals(bytes(p.mul(big(k))), bytes(ECP.glvmul(table, ECP.glvrecode(big(k)))));
+        }
+    }
+
+    @Test
+    public void mulByOrderIsInfinity() {
+        assertTrue(ECP.generator().mul(big(N)).is_infinity());
+    }
+
+    private static void checkMul(ECP p, BigInteger k) {
+        ECPoint expected = CURVE.getCurve().decodePoint(bytes(p)).multiply(k).normalize();
+        assertArrayEquals(k.toString(16), expected.getEncoded(true), bytes(p.mul(big(k))));
+    }
+
+    private static BIG big(BigInteger k) {
+        byte[] b = BigIntegers.asUnsignedByteArray(CONFIG_BIG.MODBYTES, k);
+        return BIG.fromBytes(b);
+    }
+
+    private static byte[] bytes(ECP p) {
+        byte[] b = new byte[CONFIG_BIG.MODBYTES + 1];
+        p.toBytes(b, true);
+        return b;
+    }
+}
@@ -0,0 +1,128 @@
+package org.miracl.core.SECP256K1;
+
+import org.bouncycastle.util.BigIntegers;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cross-checks the secp256k1 field arithmetic against BigInteger, so that
+ * every reduction selectable in CONFIG_FIELD gives the same results.
+ */
+public class FPTest {
+
+    private static final BigInteger P = BigInteger.ONE.shiftLeft(256)
+            .subtract(BigInteger.ONE.shiftLeft(32)).subtract(BigInteger.valueOf(977));
+
+    private final Random rnd = new Random(42);
+
+    @Test
+    public void modulusMatchesRom() {
+        assertEquals(P, toBigInteger(new BIG(ROM.Modulus)));
+    }
+
+    @Test
+    public void mulAndSqrMatchBigInteger() {
+        BigInteger[] edges = {BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(2),
+                P.subtract(BigInteger.ONE), P.subtract(BigInteger.valueOf(2)),
+                BigInteger.ONE.shiftLeft(255), BigInteger.ONE.shiftLeft(32).add(BigInteger.valueOf(977))};
+        for (BigInteger a : edges) {
+            for (BigInteger b : edges) {
+                checkMul(a, b);
+            }
+        }
+        for (int i = 0; i < 2000; i++) {
+            checkMul(new BigInteger(256, rnd).mod(P), new BigInteger(256, rnd).mod(P));
+        }
+    }
+
+    @Test
+    public void lazyReducedInputs() {
+        for (int i = 0; i < 200; i++) {
+            BigInteger a = new BigInteger(256, rnd).mod(P);
+            BigInteger b = new BigInteger(256, rnd).mod(P);
+            FP fa = fp(a);
+            FP fb = fp(b);
+            // accumulate excess up to the limit the lazy reduction allows
+            FP sum = new FP(fa);
+            for (int j = 1; j < 4000; j++) {
+                sum.add(fa);
+                sum.norm();
+            }
+            FP prod = new FP(sum);
+            prod.mul(fb);
+            assertEquals(a.multiply(BigInteger.valueOf(4000)).multiply(b).mod(P), value(prod));
+            prod = new FP(sum);
+            prod.sqr();
+            assertEquals(a.multiply(BigInteger.valueOf(4000)).pow(2).mod(P), value(prod));
+        }
+    }
+
+    @Test
+    public void modOfWideProducts() {
+        BigInteger limit = P.multiply(P).shiftLeft(24);
+        for (int i = 0; i < 2000; i++) {
+            BigInteger d = new BigInteger(limit.bitLength(), rnd).mod(limit);
+            BIG r = FP.mod(toDBIG(d));
+            BigInteger reduced = toBigInteger(r);
+            assertTrue(reduced.compareTo(P.shiftLeft(1)) < 0);
+            if (CONFIG_FIELD.MODTYPE == CONFIG_FIELD.WIDE_PSEUDO_MERSENNE) {
+                assertEquals(d.mod(P), reduced.mod(P));
+            }
+        }
+    }
+
+    @Test
+    public void inverseAndSqrtMatchBigInteger() {
+        for (int i = 0; i < 100; i++) {
+            BigInteger a = new BigInteger(256, rnd).mod(P);
+            FP inv = fp(a);
+            inv.inverse();
+            assertEquals(a.modInverse(P), value(inv));
+
+            FP square = fp(a.multiply(a).mod(P));
+            assertEquals(1, square.qr(null));
+            BigInteger root = value(square.sqrt(null));
+            assertEquals(a.multiply(a).mod(P), root.multiply(root).mod(P));
+        }
+    }
+
+    private void checkMul(BigInteger a, BigInteger b) {
+        FP prod = fp(a);
+        prod.mul(fp(b));
+        assertEquals(a.multiply(b).mod(P), value(prod));
+        FP sq = fp(a);
+        sq.sqr();
+        assertEquals(a.multiply(a).mod(P), value(sq));
+    }
+
+    private static FP fp(BigInteger a) {
+        return new FP(BIG.fromBytes(BigIntegers.asUnsignedByteArray(CONFIG_BIG.MODBYTES, a)));
+    }
+
+    private static BigInteger value(FP a) {
+        return toBigInteger(a.redc()).mod(P);
+    }
+
+    private static BigInteger toBigInteger(BIG a) {
+        BIG t = new BIG(a);
+        t.norm();
+        byte[] b = new byte[CONFIG_BIG.MODBYTES];
+        t.toBytes(b);
+        return new BigInteger(1, b);
+    }
+
+    private static DBIG toDBIG(BigInteger d) {
+        DBIG r = new DBIG(0);
+        BigInteger mask = BigInteger.ONE.shiftLeft(CONFIG_BIG.BASEBITS).subtract(BigInteger.ONE);
+        for (int i = 0; i < BIG.DNLEN; i++) {
+            r.w[i] = d.shiftRight(i * CONFIG_BIG.BASEBITS).and(mask).longValue();
+        }
+        r.w[BIG.DNLEN - 1] = d.shiftRight((BIG.DNLEN - 1) * CONFIG_BIG.BASEBITS).longValue();
+        return r;
+    }
+}